@@ -1,5 +1,6 @@
 package com.http.common;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -28,6 +29,11 @@ public class HttpRequest {
 
     private byte[] body; //POST 请求体
 
+    private long contentLength; //Content-Length，未声明时为 0
+    private BodyInputStream bodyInput; //尚未读取的请求体（流式处理时使用）
+    private Map<String, String> formParams; //multipart 表单中的普通字段（由上传处理器解析后设置）
+    private String remoteAddress; //客户端 IP（由 ConnectionHandler 设置，合成请求为 null）
+
     //构造
     public HttpRequest() {
         headers = new HashMap<>();
@@ -44,6 +50,15 @@ public class HttpRequest {
     }
 
     public HttpRequest(InputStream inputStream) throws IOException {
+        this(inputStream, true);
+    }
+
+    /**
+     * 从输入流解析请求
+     * @param readBody 为 false 时只解析请求行和头部，请求体留在流中，
+     *                 之后可通过 getBodyStream() 流式读取，或调用 readBody() 一次性读入内存
+     */
+    public HttpRequest(InputStream inputStream, boolean readBody) throws IOException {
         this.headers = new HashMap<>();
 
         java.io.ByteArrayOutputStream headerBuffer = new java.io.ByteArrayOutputStream();
@@ -95,7 +110,7 @@ public class HttpRequest {
             }
 
             // 解析请求头
-            int contentLength = 0;
+            long contentLength = 0;
             for (int i = 1; i < lines.length; i++) {
                 String line = lines[i].trim();
                 if (!line.isEmpty()) {
@@ -103,28 +118,21 @@ public class HttpRequest {
                     if (headerParts.length == 2) {
                         this.headers.put(headerParts[0], headerParts[1]);
                         if ("Content-Length".equalsIgnoreCase(headerParts[0])) {
-                            contentLength = Integer.parseInt(headerParts[1]);
+                            contentLength = Long.parseLong(headerParts[1].trim());
                         }
                     }
                 }
             }
-
-            // 🌸 gpt酱修改后的 body 读取（最正确、最可靠的方式）
+            if (contentLength < 0) {
+                throw new IOException("无效的 Content-Length: " + contentLength);
+            }
+            this.contentLength = contentLength;
             if (contentLength > 0) {
-                this.body = new byte[contentLength];
-                int totalRead = 0;
-                while (totalRead < contentLength) {
-                    int read = inputStream.read(this.body, totalRead, contentLength - totalRead);
-                    if (read == -1) {
-                        throw new IOException("未能读取完整的请求体：期望 " + contentLength + " 字节，但只读取了 " + totalRead + " 字节");
-                    }
-                    totalRead += read;
-                }
+                this.bodyInput = new BodyInputStream(inputStream, contentLength);
+            }
 
-                // 若未完全读取，说明客户端异常断开
-                if (this.body.length < contentLength) {
-                    throw new IOException("请求体未完全读取：期望 " + contentLength + " 字节，但收到 " + this.body.length);
-                }
+            if (readBody) {
+                readBody();
             }
 
         } catch (java.net.SocketException e) {
@@ -180,11 +188,66 @@ public class HttpRequest {
         return request;
     }
 
+    /**
+     * 把尚未读取的请求体完整读入内存（getBody() 可用）
+     */
+    public void readBody() throws IOException {
+        if (bodyInput == null || body != null) return;
+        if (contentLength > Integer.MAX_VALUE - 8) {
+            throw new IOException("请求体过大，无法读入内存: " + contentLength + " 字节");
+        }
+        // 🌸 gpt酱修改后的 body 读取（最正确、最可靠的方式）
+        byte[] data = new byte[(int) contentLength];
+        int totalRead = 0;
+        while (totalRead < data.length) {
+            int read = bodyInput.read(data, totalRead, data.length - totalRead);
+            if (read == -1) {
+                break;
+            }
+            totalRead += read;
+        }
+        this.body = data;
+    }
+
+    /**
+     * 以流的方式读取请求体，读到 Content-Length 为止；请求体已读入内存时返回其副本流
+     */
+    public InputStream getBodyStream() {
+        if (body != null) {
+            return new ByteArrayInputStream(body);
+        }
+        if (bodyInput != null) {
+            return bodyInput;
+        }
+        return new ByteArrayInputStream(new byte[0]);
+    }
+
+    /**
+     * 请求体中尚未被读取的字节数
+     */
+    public long getRemainingBodyLength() {
+        return (bodyInput != null && body == null) ? bodyInput.remaining : 0;
+    }
+
+    /**
+     * 跳过剩余的请求体，使长连接上的下一个请求能被正确解析
+     */
+    public void discardBody() throws IOException {
+        if (bodyInput == null || body != null) return;
+        byte[] skipBuffer = new byte[8192];
+        while (bodyInput.read(skipBuffer, 0, skipBuffer.length) != -1) {
+            // 丢弃
+        }
+    }
+
+    public long getContentLength() { return contentLength; }
+
     public void addHeader(String name, String value) {
         headers.put(name, value);
     }
 
     public Map<String, String> getBodyParams() {
+    if (formParams != null) return formParams;
     Map<String, String> params = new HashMap<>();
     if (body == null || body.length == 0) return params;
 
@@ -210,12 +273,45 @@ public class HttpRequest {
     public String getUri() { return uri; }
     public void setUri(String uri) { this.uri = uri; }
 
+    /**
+     * 去掉查询串后的路径
+     */
+    public String getPath() {
+        if (uri == null) return null;
+        int q = uri.indexOf('?');
+        return q >= 0 ? uri.substring(0, q) : uri;
+    }
+
+    /**
+     * 查询串中的参数（URL 解码），不存在时返回 null
+     */
+    public String getQueryParam(String key) {
+        int q = uri == null ? -1 : uri.indexOf('?');
+        if (q < 0) return null;
+        for (String pair : uri.substring(q + 1).split("&")) {
+            String[] kv = pair.split("=", 2);
+            try {
+                if (java.net.URLDecoder.decode(kv[0], "UTF-8").equals(key)) {
+                    return kv.length == 2 ? java.net.URLDecoder.decode(kv[1], "UTF-8") : "";
+                }
+            } catch (java.io.UnsupportedEncodingException | IllegalArgumentException e) {
+                // 编码非法的参数忽略
+            }
+        }
+        return null;
+    }
+
     public String getVersion() { return version; }
     public void setVersion(String version) { this.version = version; }
 
     public Map<String, String> getHeaders() { return headers; }
     public void setHeaders(Map<String, String> headers) { this.headers = headers; }
 
+    public void setFormParams(Map<String, String> formParams) { this.formParams = formParams; }
+
+    public String getRemoteAddress() { return remoteAddress; }
+    public void setRemoteAddress(String remoteAddress) { this.remoteAddress = remoteAddress; }
+
     public byte[] getBody() { return body; }
     public void setBody(byte[] body) { this.body = body; }
 
@@ -241,7 +337,39 @@ public class HttpRequest {
 //
 //        return builder.toString();
 //    }
-}
 
+    /**
+     * 限定长度的请求体输入流：最多读取 Content-Length 字节，不会越界读到下一个请求
+     */
+    private static class BodyInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        BodyInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
 
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : (one[0] & 0xFF);
+        }
 
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n == -1) {
+                throw new IOException("未能读取完整的请求体：还差 " + remaining + " 字节时连接已关闭");
+            }
+            remaining -= n;
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.http.common;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketException;
 import java.nio.charset.StandardCharsets;
@@ -27,6 +28,8 @@ public class HttpResponse {
     private String reasonPhrase; //状态描述
     private Map<String, String> headers; //响应头
     private byte[] body; //响应体
+    private InputStream bodyStream; //流式响应体（大文件），与 body 二选一
+    private long bodyStreamLength;
 
     //构造
     public HttpResponse() {
@@ -157,6 +160,36 @@ public class HttpResponse {
         return body;
     }
 
+    // 设置流式响应体：写出时按固定长度从流中拷贝，不把整个内容读入内存；写完或失败后关闭流
+    public void setBodyStream(InputStream stream, long length) {
+        this.body = null;
+        this.bodyStream = stream;
+        this.bodyStreamLength = length;
+        headers.put("Content-Length", String.valueOf(length));
+    }
+
+    // 写出完整报文：流式响应体在报文头之后分块拷贝
+    public void writeTo(OutputStream out) throws IOException {
+        if (bodyStream == null) {
+            out.write(toBytes());
+            return;
+        }
+        try (InputStream in = bodyStream) {
+            bodyStream = null;
+            out.write(toBytes());
+            byte[] buffer = new byte[64 * 1024];
+            long remaining = bodyStreamLength;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    throw new IOException("响应体提前结束：还差 " + remaining + " 字节");
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
     // -------------------------------
     // ✅ 转为可发送的字节报文
     // -------------------------------
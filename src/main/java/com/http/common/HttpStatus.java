@@ -7,15 +7,24 @@ public class HttpStatus {
 
     // 成功状态码
     public static final int OK = 200;
+    public static final int CREATED = 201;
+    public static final int NO_CONTENT = 204;
     // 重定向状态码
     public static final int MOVED_PERMANENTLY = 301;
     public static final int FOUND = 302;
     public static final int NOT_MODIFIED = 304;
     // 客户端错误状态码
+    public static final int BAD_REQUEST = 400;
+    public static final int UNAUTHORIZED = 401;
+    public static final int FORBIDDEN = 403;
     public static final int NOT_FOUND = 404;
     public static final int METHOD_NOT_ALLOWED = 405;
+    public static final int CONFLICT = 409;
+    public static final int PAYLOAD_TOO_LARGE = 413;
+    public static final int TOO_MANY_REQUESTS = 429;
     // 服务器错误状态码
     public static final int INTERNAL_SERVER_ERROR = 500;
+    public static final int SERVICE_UNAVAILABLE = 503;
     /**
      * 根据状态码获取状态描述
      */
@@ -23,18 +32,36 @@ public class HttpStatus {
         switch (statusCode) {
             case OK:
                 return "OK";
+            case CREATED:
+                return "Created";
+            case NO_CONTENT:
+                return "No Content";
             case MOVED_PERMANENTLY:
                 return "Moved Permanently";
             case FOUND:
                 return "Found";
             case NOT_MODIFIED:
                 return "Not Modified";
+            case BAD_REQUEST:
+                return "Bad Request";
+            case UNAUTHORIZED:
+                return "Unauthorized";
+            case FORBIDDEN:
+                return "Forbidden";
             case NOT_FOUND:
                 return "Not Found";
             case METHOD_NOT_ALLOWED:
                 return "Method Not Allowed";
+            case CONFLICT:
+                return "Conflict";
+            case PAYLOAD_TOO_LARGE:
+                return "Payload Too Large";
+            case TOO_MANY_REQUESTS:
+                return "Too Many Requests";
             case INTERNAL_SERVER_ERROR:
                 return "Internal Server Error";
+            case SERVICE_UNAVAILABLE:
+                return "Service Unavailable";
             default:
                 return "Unknown";
         }
@@ -11,6 +11,10 @@ public class MimeType {
     static {
         MIME_TYPES.put("html", "text/html");
         MIME_TYPES.put("txt", "text/plain");
+        MIME_TYPES.put("css", "text/css");
+        MIME_TYPES.put("js", "application/javascript");
+        MIME_TYPES.put("json", "application/json");
+        MIME_TYPES.put("svg", "image/svg+xml");
         MIME_TYPES.put("png", "image/png");
         MIME_TYPES.put("jpg", "image/jpeg");
         MIME_TYPES.put("jpeg", "image/jpeg");
@@ -36,4 +40,11 @@ public class MimeType {
                mimeType.startsWith("application/json") ||
                mimeType.startsWith("application/xml");
     }
+    // 值得压缩的类型：文本类 + JS + SVG（图片等二进制格式本身已压缩）
+    public static boolean isCompressible(String mimeType) {
+        if (mimeType == null) return false;
+        return isTextType(mimeType) ||
+               mimeType.startsWith("application/javascript") ||
+               mimeType.startsWith("image/svg+xml");
+    }
 }
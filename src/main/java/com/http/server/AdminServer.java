@@ -0,0 +1,336 @@
+package com.http.server;
+
+import com.http.common.HttpRequest;
+import com.http.common.HttpResponse;
+import com.http.common.HttpStatus;
+import com.http.server.auth.PasswordHasher;
+import com.http.server.auth.SessionStore;
+import com.http.server.cache.FileMetaCache;
+import com.http.server.cache.StaticContentCache;
+import com.http.server.image.ImageVariantCache;
+import com.http.server.log.AccessLog;
+import com.http.server.log.SlowRequestLog;
+import com.http.server.metrics.LatencyHistogram;
+import com.http.server.metrics.MetricsRegistry;
+import com.http.server.router.Router;
+import com.http.server.throttle.BandwidthLimiter;
+import com.http.server.upload.UploadPersister;
+import com.http.utils.ConsoleWriter;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 管理端口：独立的 ServerSocket 与单个专用线程，不经过主端口的 ConnectionHandler，
+ * 主端口连接耗尽或线程过多时仍能响应编排系统的探测。默认只监听回环地址。
+ *   GET /live     进程存活且主端口未停止：200，否则 503
+ *   GET /ready    已完成预热并开始监听、且负载未超过阈值：200，否则 503 并列出原因
+ *   GET /status   JSON 快照：线程、连接、缓存命中率、各队列深度、日志丢弃数等
+ * 请求逐个串行处理，每个连接处理一个请求后关闭；请求头有总的读取期限与大小上限，
+ * 逐字节慢慢发送的客户端也只能占住线程 REQUEST_DEADLINE_MILLIS。
+ * 探测只读取已创建的组件（peekInstance），不会为了回答探测而创建线程池、加载缓存目录。
+ */
+public class AdminServer {
+
+    private static final long REQUEST_DEADLINE_MILLIS = 2_000;
+    private static final int MAX_REQUEST_HEADER_BYTES = 8 * 1024;
+
+    private final HttpServer server;
+    private final int port;
+    private final InetAddress bindAddress;
+    private final int maxOpenConnections;
+    private final long startMillis = System.currentTimeMillis();
+    private volatile ServerSocket serverSocket;
+
+    /**
+     * @param maxOpenConnections 主端口打开的连接数超过该值时报告未就绪
+     */
+    public AdminServer(HttpServer server, int port, InetAddress bindAddress, int maxOpenConnections) {
+        this.server = server;
+        this.port = port;
+        this.bindAddress = bindAddress;
+        this.maxOpenConnections = maxOpenConnections;
+    }
+
+    /**
+     * 绑定管理端口并启动守护线程
+     */
+    public void start() throws IOException {
+        ServerSocket socket = new ServerSocket();
+        socket.setReuseAddress(true);
+        socket.bind(new InetSocketAddress(bindAddress, port));
+        serverSocket = socket;
+        Thread thread = new Thread(this::acceptLoop, "admin-listener");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY); // 主端口饱和时探测也能及时得到 CPU
+        thread.start();
+        ConsoleWriter.logServer("管理端口已启动: " + bindAddress.getHostAddress() + ":" + port);
+    }
+
+    public void stop() {
+        ServerSocket socket = serverSocket;
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void acceptLoop() {
+        ServerSocket socket = serverSocket;
+        while (!socket.isClosed()) {
+            try (Socket client = socket.accept()) {
+                HttpRequest request = new HttpRequest(new DeadlineInputStream(client), false);
+                HttpResponse response = handle(request);
+                OutputStream output = client.getOutputStream();
+                output.write(response.toBytes());
+                output.flush();
+            } catch (IOException e) {
+                if (!socket.isClosed()) {
+                    ConsoleWriter.logError("管理端口请求失败: " + e.getMessage());
+                }
+            } catch (RuntimeException e) {
+                ConsoleWriter.logError("管理端口内部错误: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 请求头的读取限制：每次读取前把 SO_TIMEOUT 设为到期限为止的剩余时间，超过期限或上限即失败
+     */
+    private static final class DeadlineInputStream extends FilterInputStream {
+        private final Socket socket;
+        private final long deadline = System.currentTimeMillis() + REQUEST_DEADLINE_MILLIS;
+        private int remaining = MAX_REQUEST_HEADER_BYTES;
+
+        DeadlineInputStream(Socket socket) throws IOException {
+            super(socket.getInputStream());
+            this.socket = socket;
+        }
+
+        @Override
+        public int read() throws IOException {
+            checkLimits();
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            checkLimits();
+            int read = super.read(buffer, offset, Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        private void checkLimits() throws IOException {
+            if (remaining <= 0) {
+                throw new IOException("管理端口请求头超过 " + MAX_REQUEST_HEADER_BYTES + " 字节");
+            }
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                throw new SocketTimeoutException("管理端口请求超过 " + REQUEST_DEADLINE_MILLIS + " ms 未读完");
+            }
+            socket.setSoTimeout((int) left);
+        }
+    }
+
+    HttpResponse handle(HttpRequest request) {
+        if (!"GET".equalsIgnoreCase(request.getMethod())) {
+            return build(HttpStatus.METHOD_NOT_ALLOWED, "text/plain; charset=utf-8", "Method Not Allowed\n");
+        }
+        String path = request.getPath();
+        if ("/live".equals(path)) {
+            boolean live = server.isRunning();
+            return build(live ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE,
+                    "text/plain; charset=utf-8", live ? "ok\n" : "stopped\n");
+        } else if ("/ready".equals(path)) {
+            JSONArray reasons = notReadyReasons();
+            JSONObject body = new JSONObject();
+            body.put("ready", reasons.length() == 0);
+            body.put("reasons", reasons);
+            return build(reasons.length() == 0 ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE,
+                    "application/json; charset=utf-8", body.toString() + "\n");
+        } else if ("/status".equals(path)) {
+            return build(HttpStatus.OK, "application/json; charset=utf-8", snapshot().toString(2) + "\n");
+        }
+        return build(HttpStatus.NOT_FOUND, "text/plain; charset=utf-8", "Not Found\n");
+    }
+
+    /**
+     * 未就绪的原因，为空表示就绪
+     */
+    private JSONArray notReadyReasons() {
+        JSONArray reasons = new JSONArray();
+        if (!server.isRunning()) {
+            reasons.put("stopped");
+        } else if (!server.isReady()) {
+            reasons.put("warming up");
+        }
+        long open = MetricsRegistry.getInstance().getOpenConnections();
+        if (open > maxOpenConnections) {
+            reasons.put("open connections " + open + " > " + maxOpenConnections);
+        }
+        PasswordHasher hasher = PasswordHasher.peekInstance();
+        if (hasher != null) {
+            checkQueue(reasons, "password hash queue", hasher.getQueueDepth(), hasher.getQueueCapacity());
+        }
+        UploadPersister persister = UploadPersister.peekInstance();
+        if (persister != null) {
+            checkQueue(reasons, "upload sync queue", persister.getQueueDepth(), persister.getQueueCapacity());
+        }
+        ImageVariantCache imageCache = ImageVariantCache.peekInstance();
+        if (imageCache != null) {
+            checkQueue(reasons, "image resize queue", imageCache.getQueueDepth(), imageCache.getQueueCapacity());
+        }
+        return reasons;
+    }
+
+    /**
+     * 有界队列超过容量的 3/4 即视为饱和
+     */
+    private static void checkQueue(JSONArray reasons, String name, int depth, int capacity) {
+        int limit = capacity * 3 / 4;
+        if (depth > limit) {
+            reasons.put(name + " " + depth + " > " + limit);
+        }
+    }
+
+    private JSONObject snapshot() {
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        JSONObject root = new JSONObject();
+
+        JSONObject status = new JSONObject();
+        status.put("running", server.isRunning());
+        status.put("ready", notReadyReasons().length() == 0);
+        status.put("warm", server.isReady());
+        status.put("uptimeSeconds", (System.currentTimeMillis() - startMillis) / 1000);
+        root.put("server", status);
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        JSONObject threads = new JSONObject();
+        threads.put("live", threadBean.getThreadCount());
+        threads.put("daemon", threadBean.getDaemonThreadCount());
+        threads.put("peak", threadBean.getPeakThreadCount());
+        threads.put("connectionHandlers", metrics.getActiveHandlers());
+        root.put("threads", threads);
+
+        JSONObject connections = new JSONObject();
+        connections.put("open", metrics.getOpenConnections());
+        connections.put("bytesIn", metrics.getBytesIn());
+        connections.put("bytesOut", metrics.getBytesOut());
+        root.put("connections", connections);
+
+        JSONObject requests = new JSONObject();
+        for (String route : Router.ROUTES) {
+            LatencyHistogram latency = metrics.getLatency(route);
+            long count = latency.getCount();
+            if (count == 0) continue;
+            JSONObject routeJson = new JSONObject();
+            routeJson.put("count", count);
+            routeJson.put("p50Micros", latency.percentile(0.5));
+            routeJson.put("p99Micros", latency.percentile(0.99));
+            requests.put(route, routeJson);
+        }
+        root.put("routes", requests);
+
+        JSONObject caches = new JSONObject();
+        StaticContentCache staticCache = StaticContentCache.getInstance();
+        caches.put("static", cacheJson(staticCache.size(), staticCache.getTotalBytes(),
+                staticCache.getHits(), staticCache.getMisses()));
+        ImageVariantCache imageCache = ImageVariantCache.peekInstance();
+        if (imageCache != null) {
+            JSONObject image = cacheJson(imageCache.size(), imageCache.getMemoryBytes(),
+                    imageCache.getHits(), imageCache.getMisses());
+            image.put("diskBytes", imageCache.getDiskBytes());
+            image.put("queueDepth", imageCache.getQueueDepth());
+            image.put("queueCapacity", imageCache.getQueueCapacity());
+            caches.put("image", image);
+        }
+        JSONObject fileMeta = new JSONObject();
+        fileMeta.put("entries", FileMetaCache.getInstance().size());
+        caches.put("fileMeta", fileMeta);
+        root.put("caches", caches);
+
+        // 尚未创建的组件不出现在快照中
+        UploadPersister persister = UploadPersister.peekInstance();
+        if (persister != null) {
+            JSONObject uploads = new JSONObject();
+            uploads.put("durability", persister.getDurability().name().toLowerCase());
+            uploads.put("queueDepth", persister.getQueueDepth());
+            uploads.put("queueCapacity", persister.getQueueCapacity());
+            uploads.put("batches", persister.getBatches());
+            uploads.put("skippedSyncs", persister.getSkippedSyncs());
+            root.put("uploads", uploads);
+        }
+
+        JSONObject auth = new JSONObject();
+        SessionStore sessions = SessionStore.peekInstance();
+        if (sessions != null) {
+            auth.put("sessions", sessions.size());
+        }
+        PasswordHasher hasher = PasswordHasher.peekInstance();
+        if (hasher != null) {
+            auth.put("hashQueueDepth", hasher.getQueueDepth());
+            auth.put("hashQueueCapacity", hasher.getQueueCapacity());
+        }
+        root.put("auth", auth);
+
+        JSONObject throttle = new JSONObject();
+        throttle.put("enabled", BandwidthLimiter.getInstance().isEnabled());
+        throttle.put("trackedAddresses", BandwidthLimiter.getInstance().getTrackedAddresses());
+        root.put("throttle", throttle);
+
+        JSONObject logs = new JSONObject();
+        logs.put("consoleDropped", ConsoleWriter.getDropped());
+        logs.put("accessLogDropped", AccessLog.getInstance().getDropped());
+        logs.put("slowRequests", SlowRequestLog.getInstance().getSlowRequests());
+        root.put("logs", logs);
+        return root;
+    }
+
+    private static JSONObject cacheJson(int entries, long bytes, long hits, long misses) {
+        JSONObject json = new JSONObject();
+        json.put("entries", entries);
+        json.put("bytes", bytes);
+        json.put("hits", hits);
+        json.put("misses", misses);
+        long total = hits + misses;
+        json.put("hitRate", total == 0 ? 0.0 : (double) hits / total);
+        return json;
+    }
+
+    private static HttpResponse build(int statusCode, String contentType, String bodyStr) {
+        byte[] body = bodyStr.getBytes(StandardCharsets.UTF_8);
+        HttpResponse resp = new HttpResponse();
+        resp.setVersion("HTTP/1.1");
+        resp.setStatusCode(statusCode);
+        resp.setReasonPhrase(HttpStatus.getReasonPhrase(statusCode));
+        resp.addHeader("Content-Type", contentType);
+        resp.addHeader("Content-Length", String.valueOf(body.length));
+        resp.addHeader("Cache-Control", "no-store");
+        resp.addHeader("Connection", "close");
+        resp.setBody(body);
+        return resp;
+    }
+}
@@ -4,7 +4,19 @@ import java.io.*;
 import java.net.*;
 import com.http.common.HttpRequest;
 import com.http.common.HttpResponse;
+import com.http.common.HttpStatus;
+import com.http.server.jfr.ServerEvents;
+import com.http.server.log.AccessLog;
+import com.http.server.log.CountingInputStream;
+import com.http.server.log.CountingOutputStream;
+import com.http.server.log.SlowRequestLog;
+import com.http.server.metrics.MetricsRegistry;
+import com.http.server.metrics.RequestTimings;
 import com.http.server.router.Router;
+import com.http.server.throttle.BandwidthLimiter;
+import com.http.server.throttle.Throttle;
+import com.http.server.throttle.ThrottledInputStream;
+import com.http.server.throttle.ThrottledOutputStream;
 import com.http.utils.ConsoleWriter;
 
 public class ConnectionHandler implements Runnable{
@@ -16,6 +28,9 @@ public class ConnectionHandler implements Runnable{
     //③	构造 HTTP 响应	使用 HttpResponse
     //④	发送响应回客户端	输出字节流并关闭 socket
 
+    // 长连接上最多替 Handler 跳过的未读请求体字节数
+    private static final long MAX_DISCARD_BYTES = 64 * 1024;
+
     private Socket socket;
     private Router router;
 
@@ -26,9 +41,41 @@ public class ConnectionHandler implements Runnable{
 
     @Override
     public void run(){
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        // JFR 事件：运行时没有 jdk.jfr 时为空实现；未录制时只是创建并丢弃一个事件对象
+        ServerEvents events = ServerEvents.get();
+        Object connectionEvent = events.beginConnection();
+        CountingInputStream countingInput = null;
+        CountingOutputStream countingOutput = null;
+        int requests = 0;
+        // 指标与访问日志需要每个请求的收发字节数与耗时
+        AccessLog accessLog = null;
+        RequestTimings timings = new RequestTimings();
+        // 正在处理、尚未记录的请求：处理中抛出异常时，外层返回的 500 也按同一路由记录
+        HttpRequest pending = null;
+        String pendingRoute = null;
+        long pendingInBefore = 0, pendingOutBefore = 0;
+        // 从这里起的任何异常（包括日志等组件初始化失败）都经过 finally 关闭连接、归还计数
+        metrics.handlerStarted();
         try {
+            accessLog = AccessLog.getInstance();
             InputStream input = socket.getInputStream();
             OutputStream output = socket.getOutputStream();
+            SlowRequestLog slowLog = SlowRequestLog.getInstance();
+            countingInput = new CountingInputStream(input);
+            countingOutput = new CountingOutputStream(output);
+            input = countingInput;
+            output = countingOutput;
+            // 带宽整形：未配置任何限速时直接使用原始流
+            Throttle throttle = null;
+            ThrottledInputStream throttledInput = null;
+            BandwidthLimiter limiter = BandwidthLimiter.getInstance();
+            if (limiter.isEnabled()) {
+                throttle = limiter.newThrottle(socket.getInetAddress());
+                throttledInput = new ThrottledInputStream(input, throttle);
+                input = throttledInput;
+                output = new ThrottledOutputStream(output, throttle);
+            }
             // int[] arr = new int[1];
             // System.out.println(arr[10]); // 故意制造数组越界异常，测试500错误处理
             boolean keepAlive = true;
@@ -38,18 +85,68 @@ public class ConnectionHandler implements Runnable{
             // 支持长连接 - 在一个TCP连接上处理多个HTTP请求
             while (keepAlive) {
                 try {
-                    // 1️⃣ 解析请求
-                    HttpRequest request = new HttpRequest(input);
+                    if (throttle != null) {
+                        throttle.setRoute(null); // 请求头按默认规则计量
+                    }
+                    countingInput.markRequestStart();
+                    long bytesInBefore = countingInput.getCount();
+                    long bytesOutBefore = countingOutput.getCount();
+                    // 1️⃣ 解析请求：先只读头部，上传等流式路由由 Handler 自己从流中读取请求体
+                    HttpRequest request = new HttpRequest(input, false);
+                    request.setRemoteAddress(socket.getInetAddress().getHostAddress());
+                    timings.start(countingInput.getRequestStartNanos());
+                    timings.end(RequestTimings.Phase.HEADER);
+                    long headerEnd = countingInput.getCount();
+                    requests++;
+                    String routeKey = router.routeKey(request);
+                    pending = request;
+                    pendingRoute = routeKey;
+                    pendingInBefore = bytesInBefore;
+                    pendingOutBefore = bytesOutBefore;
+                    events.requestParsed(request.getMethod(), request.getUri(), routeKey,
+                            headerEnd - bytesInBefore, timings.getNanos(RequestTimings.Phase.HEADER));
+                    if (throttle != null) {
+                        throttledInput.settle(); // 请求头字节一次性计量
+                        throttle.setRoute(routeKey);
+                    }
                     String uri = request.getUri();
-                    ConsoleWriter.logServer("收到请求: " + request.getMethod() + " " + uri);
+                    ConsoleWriter.logRequest("收到请求: " + request.getMethod() + " " + uri);
+
+                    // 准入检查（如登录限流）在读取请求体之前完成，被拒绝的请求不解析请求体
+                    HttpResponse response = router.admit(request);
+                    timings.end(RequestTimings.Phase.ADMIT);
+                    if (response == null) {
+                        if (!router.isStreamingRoute(request)) {
+                            request.readBody();
+                        }
+                        timings.end(RequestTimings.Phase.BODY);
+                        // 2️⃣ 使用Router路由请求到对应的Handler
+                        boolean upload = "upload".equals(routeKey) || "resumable".equals(routeKey);
+                        Object handlerEvent = events.beginHandler();
+                        Object uploadEvent = upload ? events.beginUpload() : null;
+                        response = router.route(request);
+                        timings.end(RequestTimings.Phase.HANDLER);
+                        events.endHandler(handlerEvent, routeKey, uri, response.getStatusCode());
+                        if (upload) {
+                            events.endUpload(uploadEvent, routeKey, uri, countingInput.getCount() - headerEnd,
+                                    response.getStatusCode());
+                        }
+                    }
 
-                    // 2️⃣ 使用Router路由请求到对应的Handler
-                    HttpResponse response = router.route(request);
+                    // Handler 未读完的请求体：少量时跳过以保持长连接，过多时直接关闭连接
+                    if (request.getRemainingBodyLength() > MAX_DISCARD_BYTES) {
+                        keepAlive = false;
+                    } else {
+                        request.discardBody();
+                    }
+                    timings.end(RequestTimings.Phase.BODY);
 
                     // 3️⃣ 按请求版本与头部决定是否长连接
                     String connection = request.getHeaders().get("Connection");
                     String version = request.getVersion();
-                    if ("HTTP/1.1".equalsIgnoreCase(version)) {
+                    if (!keepAlive) {
+                        response.addHeader("Connection", "close");
+                    } else if ("HTTP/1.1".equalsIgnoreCase(version)) {
                         // HTTP/1.1 默认长连接，除非明确要求关闭
                         if ("close".equalsIgnoreCase(connection)) {
                             keepAlive = false;
@@ -72,10 +169,22 @@ public class ConnectionHandler implements Runnable{
                     }
 
                     // 4️⃣ 发送响应
-                    output.write(response.toBytes());
+                    Object writtenEvent = events.beginWrite();
+                    response.writeTo(output);
                     output.flush();
-
-                    ConsoleWriter.logServer("响应已发送: " + response.getStatusCode() + " " + response.getReasonPhrase());
+                    timings.end(RequestTimings.Phase.WRITE);
+
+                    long bytesIn = countingInput.getCount() - bytesInBefore;
+                    long bytesOut = countingOutput.getCount() - bytesOutBefore;
+                    long micros = timings.getTotalNanos() / 1000;
+                    pending = null;
+                    metrics.recordRequest(routeKey, response.getStatusCode(), micros, bytesIn, bytesOut);
+                    metrics.recordPhases(timings);
+                    slowLog.record(request, routeKey, response.getStatusCode(), bytesIn, bytesOut, timings);
+                    events.endWrite(writtenEvent, routeKey, response.getStatusCode(), bytesIn, bytesOut,
+                            timings.getTotalNanos());
+                    accessLog.log(request, response.getStatusCode(), bytesIn, bytesOut, micros);
+                    ConsoleWriter.logRequest("响应已发送: " + response.getStatusCode() + " " + response.getReasonPhrase());
 
                     // 如果是短连接，退出循环
                     if (!keepAlive) {
@@ -83,10 +192,10 @@ public class ConnectionHandler implements Runnable{
                     }
 
                 } catch (java.net.SocketTimeoutException e) {
-                    ConsoleWriter.logServer("连接超时，关闭长连接");
+                    ConsoleWriter.logRequest("连接超时，关闭长连接");
                     break;
                 } catch (java.io.EOFException e) {
-                    ConsoleWriter.logServer("客户端关闭连接");
+                    ConsoleWriter.logRequest("客户端关闭连接");
                     break;
                 }
             }
@@ -100,14 +209,27 @@ public class ConnectionHandler implements Runnable{
             ConsoleWriter.logError("服务器内部错误: " + e.getMessage());
             try {
                 HttpResponse errorResponse = create500ErrorResponse();
-                OutputStream output = socket.getOutputStream();
+                OutputStream output = countingOutput != null ? countingOutput : socket.getOutputStream();
                 output.write(errorResponse.toBytes());
                 output.flush();
             } catch (IOException ignored) {
                 // 如果连接已断开，无法发送错误响应
             }
+            if (pending != null) {
+                timings.end(RequestTimings.Phase.WRITE);
+                long bytesIn = countingInput.getCount() - pendingInBefore;
+                long bytesOut = countingOutput.getCount() - pendingOutBefore;
+                long micros = timings.getTotalNanos() / 1000;
+                metrics.recordRequest(pendingRoute, HttpStatus.INTERNAL_SERVER_ERROR, micros, bytesIn, bytesOut);
+                accessLog.log(pending, HttpStatus.INTERNAL_SERVER_ERROR, bytesIn, bytesOut, micros);
+            }
         } finally {
             try { socket.close(); } catch (IOException ignored) {}
+            metrics.connectionClosed();
+            metrics.handlerFinished();
+            events.endConnection(connectionEvent, socket.getInetAddress(), requests,
+                    countingInput != null ? countingInput.getCount() : 0,
+                    countingOutput != null ? countingOutput.getCount() : 0);
         }
     }
 
@@ -1,25 +1,88 @@
 package com.http.server;
 
+import com.http.server.auth.PasswordHasher;
+import com.http.server.cache.CachePolicy;
+import com.http.server.cache.PackedWebRoot;
+import com.http.server.cache.PrecompressTask;
+import com.http.server.handler.StaticFileHandler;
+import com.http.server.log.AccessLog;
+import com.http.server.log.SlowRequestLog;
+import com.http.server.metrics.MetricsRegistry;
+import com.http.server.router.Router;
+import com.http.server.throttle.BandwidthLimiter;
+import com.http.server.throttle.LoginRateLimiter;
+import com.http.server.upload.UploadPersister;
 import com.http.utils.ConsoleWriter;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-
-import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 public class HttpServer {
     //HTTP服务器主类，监听端口并处理连接
     private int port;//监听端口 一定private吗?
     private volatile boolean running = false;
     private ServerSocket serverSocket;
+    private boolean precompressOnStart = false;//启动时为静态资源生成 .gz
+    private boolean warmupOnStart = false;//启动时预加载静态资源并预热 JIT
+    private Path preloadManifest;//热点文件清单，为 null 时预加载整个 Web 根目录
+    private int warmupRequests = 2000;//JIT 预热的合成请求数
+    private Path webPack;//单文件打包的 Web 根目录，为 null 时直接读文件系统
+    private volatile boolean ready = false;//预热完成且开始监听后才为 true
+    private int adminPort = 0;//管理端口（存活/就绪探测与状态快照），0 为不启用
+    private InetAddress adminBindAddress = InetAddress.getLoopbackAddress();
+    private int readyMaxConnections = 1000;//打开的连接数超过该值时报告未就绪
+    private AdminServer adminServer;
 
     public HttpServer(int port) {
         this.port = port;
     }
 
+    public void setPrecompressOnStart(boolean precompressOnStart) {
+        this.precompressOnStart = precompressOnStart;
+    }
+
+    public void setWarmupOnStart(boolean warmupOnStart) {
+        this.warmupOnStart = warmupOnStart;
+    }
+
+    public void setPreloadManifest(Path preloadManifest) {
+        this.preloadManifest = preloadManifest;
+    }
+
+    public void setWarmupRequests(int warmupRequests) {
+        this.warmupRequests = warmupRequests;
+    }
+
+    public void setWebPack(Path webPack) {
+        this.webPack = webPack;
+    }
+
+    public void setAdminPort(int adminPort) {
+        this.adminPort = adminPort;
+    }
+
+    public void setAdminBindAddress(InetAddress adminBindAddress) {
+        this.adminBindAddress = adminBindAddress;
+    }
+
+    public void setReadyMaxConnections(int readyMaxConnections) {
+        this.readyMaxConnections = readyMaxConnections;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
     public void start() {
         if (running) {
             ConsoleWriter.logServer("服务器已经在运行中");
@@ -28,9 +91,48 @@ public class HttpServer {
         running = true;
         //启动服务器，监听端口，处理连接
 
-        ConsoleWriter.logServer("💫 HTTP服务器已启动，监听端口: " + port);
+        // 管理端口最先启动：预热期间探测即可得到“未就绪”而不是连接失败
+        if (adminPort > 0) {
+            try {
+                adminServer = new AdminServer(this, adminPort, adminBindAddress, readyMaxConnections);
+                adminServer.start();
+            } catch (IOException e) {
+                ConsoleWriter.logError("管理端口启动失败: " + e.getMessage());
+                adminServer = null;
+            }
+        }
+
+        if (precompressOnStart) {
+            try {
+                int count = new PrecompressTask(StaticFileHandler.DEFAULT_WEB_ROOT).run();
+                ConsoleWriter.logServer("预压缩静态资源完成，生成 " + count + " 个 .gz 文件");
+            } catch (IOException e) {
+                ConsoleWriter.logError("预压缩静态资源失败: " + e.getMessage());
+            }
+        }
+
+        if (webPack != null) {
+            try {
+                PackedWebRoot.install(webPack, CachePolicy.getDefault());
+                ConsoleWriter.logServer("使用打包文件提供静态资源: " + webPack);
+            } catch (IOException e) {
+                ConsoleWriter.logError("加载打包文件失败，改用文件系统: " + e.getMessage());
+            }
+        }
+
+        // 预热放在绑定端口之前：负载均衡探测到端口可连时，缓存和 JIT 都已就绪
+        if (warmupOnStart) {
+            try {
+                new WarmupTask(StaticFileHandler.DEFAULT_WEB_ROOT, preloadManifest, warmupRequests).run();
+            } catch (IOException e) {
+                ConsoleWriter.logError("启动预热失败: " + e.getMessage());
+            }
+        }
+
         try {
             serverSocket = new ServerSocket(port);
+            ready = true;
+            ConsoleWriter.logServer("💫 HTTP服务器已启动，监听端口: " + port);
             while (running) {
                 try {
                     Socket clientSocket = serverSocket.accept();// 等待客户端连接
@@ -38,7 +140,8 @@ public class HttpServer {
                     // 设置Socket超时时间支持长连接 - 临时增加到2分钟用于调试
                     clientSocket.setSoTimeout(120000); // 120秒超时
                     
-                    ConsoleWriter.logServer("🔗 收到客户端连接: " + clientSocket.getInetAddress());
+                    ConsoleWriter.logRequest("🔗 收到客户端连接: " + clientSocket.getInetAddress());
+                    MetricsRegistry.getInstance().connectionOpened();
                     //处理连接
                     new Thread(new ConnectionHandler(clientSocket)).start();
                 } catch (IOException e) {
@@ -57,6 +160,10 @@ public class HttpServer {
     public void stop() {
         if (!running) return;
         running = false;
+        ready = false;
+        if (adminServer != null) {
+            adminServer.stop();
+        }
         try {
             if (serverSocket != null && !serverSocket.isClosed()) {
                 serverSocket.close();
@@ -67,9 +174,165 @@ public class HttpServer {
         }
     }
 
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "用法: java com.http.server.HttpServer [选项]",
+            "  --precompress                      启动时为静态资源生成 .gz",
+            "  --warmup                           启动时预加载静态资源并预热 JIT",
+            "  --warmup-requests=N                JIT 预热的合成请求数",
+            "  --preload-manifest=FILE            热点文件清单（隐含 --warmup）",
+            "  --web-pack=FILE                    从单文件打包的 Web 根目录提供静态资源",
+            "  --upload-durability=none|async|fsync",
+            "  --pbkdf2-iterations=N",
+            "  --login-ip-per-min=N --login-user-failures-per-min=N   登录限流",
+            "  --bw-global=B --bw-ip=B --bw-conn=B   带宽限制（字节/秒）",
+            "  --bw-route=ROUTE:B --bw-exempt=ROUTE",
+            "  --log-level=request|info|error|off --log-sync",
+            "  --access-log=DIR --access-log-format=combined|json",
+            "  --access-log-max-mb=N --access-log-rotate-minutes=N",
+            "  --slow-request-ms=N --slow-request-sample=N",
+            "  --admin-port=N --admin-bind=ADDR --ready-max-connections=N");
+
+    /**
+     * 解析取值为枚举常量的参数（不区分大小写），取值非法时打印用法并退出
+     */
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String arg, String prefix) {
+        String value = arg.substring(prefix.length());
+        StringBuilder allowed = new StringBuilder();
+        for (E constant : type.getEnumConstants()) {
+            if (constant.name().equalsIgnoreCase(value)) {
+                return constant;
+            }
+            allowed.append(allowed.length() == 0 ? "" : " | ").append(constant.name().toLowerCase());
+        }
+        exitWithUsage("无效的参数: " + arg + "（可选值: " + allowed + "）");
+        return null; // 不会执行到
+    }
+
+    /**
+     * 解析取值为整数的参数，不是数字或超出 [min, max] 时打印用法并退出
+     */
+    private static long parseNumber(String arg, String prefix, long min, long max) {
+        String value = arg.substring(prefix.length());
+        try {
+            long number = Long.parseLong(value.trim());
+            if (number >= min && number <= max) {
+                return number;
+            }
+        } catch (NumberFormatException ignored) {
+            // 与超出范围一样处理
+        }
+        exitWithUsage("无效的参数: " + arg + "（取值范围: " + min + " ~ " + max + "）");
+        return 0; // 不会执行到
+    }
+
+    /**
+     * 解析取值为路由名（见 Router.ROUTES）的参数，未知路由打印用法并退出
+     */
+    private static String parseRoute(String arg, String route) {
+        if (!Arrays.asList(Router.ROUTES).contains(route)) {
+            exitWithUsage("无效的参数: " + arg + "（未知路由: " + route + "，可选值: "
+                    + String.join(" | ", Router.ROUTES) + "）");
+        }
+        return route;
+    }
+
+    private static void exitWithUsage(String message) {
+        ConsoleWriter.logError(message);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+
     public static void main(String[] args) {
+        // 服务器环境下没有显示设备（图片缩放用到 AWT），须在任何 AWT 类加载前设置
+        System.setProperty("java.awt.headless", "true");
         //启动HTTP服务器
         HttpServer server = new HttpServer(6175);//port可以改
+        long bwGlobal = 0, bwAddress = 0, bwConnection = 0;//带宽限制（字节/秒），0 为不限速
+        ConsoleWriter.Level logLevel = ConsoleWriter.Level.REQUEST;
+        boolean asyncLog = true;
+        Path accessLogDir = null;//访问日志目录，未指定时不记录
+        AccessLog.Format accessLogFormat = AccessLog.Format.COMBINED;
+        long slowRequestMillis = 1000;//慢请求阈值，0 为关闭
+        int slowRequestSample = 1;
+        long accessLogMaxBytes = 64L * 1024 * 1024, accessLogRotateMillis = 24 * 60 * 60_000L;
+        int loginPerAddress = 30, loginPerUsername = 10;//每分钟每个 IP 的登录尝试、每个用户名的失败次数上限
+        for (String arg : args) {
+            if ("--precompress".equals(arg)) {
+                server.setPrecompressOnStart(true);
+            } else if ("--warmup".equals(arg)) {
+                server.setWarmupOnStart(true);
+            } else if (arg.startsWith("--warmup-requests=")) {
+                server.setWarmupRequests((int) parseNumber(arg, "--warmup-requests=", 0, Integer.MAX_VALUE));
+            } else if (arg.startsWith("--web-pack=")) {
+                server.setWebPack(Paths.get(arg.substring("--web-pack=".length())));
+            } else if (arg.startsWith("--upload-durability=")) {
+                // none | async | fsync（默认）
+                UploadPersister.configure(parseEnum(UploadPersister.Durability.class, arg, "--upload-durability="), 2);
+            } else if (arg.startsWith("--pbkdf2-iterations=")) {
+                PasswordHasher.configure((int) parseNumber(arg, "--pbkdf2-iterations=", 1, Integer.MAX_VALUE),
+                        Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 2_000);
+            } else if (arg.startsWith("--login-ip-per-min=")) {
+                loginPerAddress = (int) parseNumber(arg, "--login-ip-per-min=", 1, Integer.MAX_VALUE);
+            } else if (arg.startsWith("--login-user-failures-per-min=")) {
+                loginPerUsername = (int) parseNumber(arg, "--login-user-failures-per-min=", 1, Integer.MAX_VALUE);
+            } else if (arg.startsWith("--bw-global=")) {
+                bwGlobal = parseNumber(arg, "--bw-global=", 0, Long.MAX_VALUE);
+            } else if (arg.startsWith("--bw-ip=")) {
+                bwAddress = parseNumber(arg, "--bw-ip=", 0, Long.MAX_VALUE);
+            } else if (arg.startsWith("--bw-conn=")) {
+                bwConnection = parseNumber(arg, "--bw-conn=", 0, Long.MAX_VALUE);
+            } else if (arg.startsWith("--bw-route=")) {
+                // 路由名:单连接速率，例如 --bw-route=static:262144
+                String rule = arg.substring("--bw-route=".length());
+                int colon = rule.indexOf(':');
+                if (colon < 0) {
+                    exitWithUsage("无效的参数: " + arg + "（格式: --bw-route=ROUTE:B）");
+                }
+                String route = parseRoute(arg, rule.substring(0, colon));
+                BandwidthLimiter.setRouteLimit(route,
+                        parseNumber(arg, "--bw-route=" + route + ":", 0, Long.MAX_VALUE));
+            } else if (arg.startsWith("--bw-exempt=")) {
+                BandwidthLimiter.setExempt(parseRoute(arg, arg.substring("--bw-exempt=".length())), true);
+            } else if (arg.startsWith("--preload-manifest=")) {
+                server.setWarmupOnStart(true);
+                server.setPreloadManifest(Paths.get(arg.substring("--preload-manifest=".length())));
+            } else if (arg.startsWith("--log-level=")) {
+                // request（默认）| info | error | off；生产环境用 info 关闭每个请求的日志
+                logLevel = parseEnum(ConsoleWriter.Level.class, arg, "--log-level=");
+            } else if ("--log-sync".equals(arg)) {
+                asyncLog = false;
+            } else if (arg.startsWith("--access-log=")) {
+                accessLogDir = Paths.get(arg.substring("--access-log=".length()));
+            } else if (arg.startsWith("--access-log-format=")) {
+                // combined（默认）| json
+                accessLogFormat = parseEnum(AccessLog.Format.class, arg, "--access-log-format=");
+            } else if (arg.startsWith("--access-log-max-mb=")) {
+                accessLogMaxBytes = parseNumber(arg, "--access-log-max-mb=", 1, Long.MAX_VALUE >> 20) << 20;
+            } else if (arg.startsWith("--admin-port=")) {
+                server.setAdminPort((int) parseNumber(arg, "--admin-port=", 0, 65535));
+            } else if (arg.startsWith("--admin-bind=")) {
+                // 默认只监听回环地址；容器内探测可设为 0.0.0.0
+                try {
+                    server.setAdminBindAddress(InetAddress.getByName(arg.substring("--admin-bind=".length())));
+                } catch (UnknownHostException e) {
+                    exitWithUsage("无效的管理端口地址: " + arg);
+                }
+            } else if (arg.startsWith("--ready-max-connections=")) {
+                server.setReadyMaxConnections((int) parseNumber(arg, "--ready-max-connections=", 1, Integer.MAX_VALUE));
+            } else if (arg.startsWith("--slow-request-ms=")) {
+                slowRequestMillis = parseNumber(arg, "--slow-request-ms=", 0, Long.MAX_VALUE);
+            } else if (arg.startsWith("--slow-request-sample=")) {
+                // 每 N 个慢请求输出 1 个
+                slowRequestSample = (int) parseNumber(arg, "--slow-request-sample=", 1, Integer.MAX_VALUE);
+            } else if (arg.startsWith("--access-log-rotate-minutes=")) {
+                accessLogRotateMillis = parseNumber(arg, "--access-log-rotate-minutes=", 1, Long.MAX_VALUE / 60_000) * 60_000;
+            }
+        }
+        ConsoleWriter.configure(logLevel, asyncLog);
+        AccessLog.configure(accessLogDir, accessLogFormat, accessLogMaxBytes, accessLogRotateMillis);
+        SlowRequestLog.configure(slowRequestMillis, slowRequestSample);
+        BandwidthLimiter.configure(bwGlobal, bwAddress, bwConnection);
+        LoginRateLimiter.configure(loginPerAddress, loginPerUsername);
         server.start();
     }
 }
@@ -0,0 +1,131 @@
+package com.http.server;
+
+import com.http.common.HttpRequest;
+import com.http.server.cache.FileMetaCache;
+import com.http.server.cache.PackedWebRoot;
+import com.http.server.cache.StaticContentCache;
+import com.http.server.image.ImageVariantCache;
+import com.http.server.router.Router;
+import com.http.utils.ConsoleWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 启动预热：
+ * ① 把 Web 根目录（或清单中列出的热点文件）预先读入静态内容缓存，避免重启后的冷盘读；
+ * ② 通过 Router.route 发送若干次合成请求，让 JIT 提前编译请求处理的热路径。
+ * 预热在开始监听之前完成，结束时把缓存的命中/未命中计数清零，/status 的命中率只反映真实流量。
+ */
+public class WarmupTask {
+
+    private static final String[] COMPRESSED_SUFFIXES = {".br", ".gz"};
+
+    private final Path webRoot;
+    private final Path manifest;
+    private final int syntheticRequests;
+
+    /**
+     * @param webRoot           静态文件根目录
+     * @param manifest          热点文件清单（每行一个相对路径，# 开头为注释），为 null 时遍历整个根目录
+     * @param syntheticRequests 合成请求总数，0 表示不做 JIT 预热
+     */
+    public WarmupTask(Path webRoot, Path manifest, int syntheticRequests) {
+        this.webRoot = webRoot.toAbsolutePath().normalize();
+        this.manifest = manifest;
+        this.syntheticRequests = syntheticRequests;
+    }
+
+    public void run() throws IOException {
+        long start = System.currentTimeMillis();
+        List<String> paths = listHotFiles();
+        // 打包数据源已整体映射进内存，无需再预加载单个文件
+        int preloaded = PackedWebRoot.getInstalled() == null ? preload(paths) : 0;
+        warmRouter(paths);
+        resetStatistics();
+        ConsoleWriter.logServer("预热完成：预加载 " + preloaded + " 个文件，合成请求 " + syntheticRequests
+                + " 次，耗时 " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private List<String> listHotFiles() throws IOException {
+        if (manifest != null) {
+            List<String> paths = new ArrayList<>();
+            for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                paths.add(line.replaceFirst("^/", ""));
+            }
+            return paths;
+        }
+        try (Stream<Path> stream = Files.walk(webRoot)) {
+            return stream.filter(Files::isRegularFile)
+                    .map(p -> webRoot.relativize(p).toString().replace('\\', '/'))
+                    .filter(p -> !p.endsWith(".gz") && !p.endsWith(".br"))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private int preload(List<String> paths) {
+        FileMetaCache metaCache = FileMetaCache.getInstance();
+        StaticContentCache contentCache = StaticContentCache.getInstance();
+        int count = 0;
+        for (String relative : paths) {
+            Path file = webRoot.resolve(relative).normalize();
+            if (!file.startsWith(webRoot)) continue;
+            if (load(metaCache, contentCache, file)) {
+                count++;
+            }
+            // 预压缩兄弟文件也一起预加载
+            for (String suffix : COMPRESSED_SUFFIXES) {
+                load(metaCache, contentCache, file.resolveSibling(file.getFileName() + suffix));
+            }
+        }
+        return count;
+    }
+
+    private boolean load(FileMetaCache metaCache, StaticContentCache contentCache, Path file) {
+        FileMetaCache.FileMeta meta = metaCache.stat(file);
+        if (!meta.isFile()) return false;
+        try {
+            contentCache.read(file, meta.getLastModified(), meta.getLength());
+            return true;
+        } catch (IOException e) {
+            ConsoleWriter.logError("预加载失败: " + file + " - " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void resetStatistics() {
+        StaticContentCache.getInstance().resetStatistics();
+        ImageVariantCache imageCache = ImageVariantCache.peekInstance();
+        if (imageCache != null) {
+            imageCache.resetStatistics();
+        }
+    }
+
+    private void warmRouter(List<String> paths) {
+        if (syntheticRequests <= 0) return;
+        List<String> uris = new ArrayList<>();
+        uris.add("/");
+        for (String p : paths) {
+            uris.add("/" + p);
+        }
+        uris.add("/__warmup_not_found__"); // 同时预热 404 路径
+
+        Router router = new Router();
+        for (int i = 0; i < syntheticRequests; i++) {
+            HttpRequest request = new HttpRequest("GET", uris.get(i % uris.size()));
+            // 交替携带压缩协商头，覆盖两条分支
+            if ((i & 1) == 0) {
+                request.addHeader("Accept-Encoding", "gzip, br");
+            }
+            router.route(request);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.http.server.auth;
+
+/**
+ * 密码哈希线程池繁忙（队列已满或排队超时），调用方应返回 503 让客户端稍后重试
+ */
+public class AuthBusyException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    public AuthBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,197 @@
+package com.http.server.auth;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 加盐 PBKDF2（HMAC-SHA256）密码哈希，存储格式：pbkdf2$迭代次数$盐(Base64)$哈希(Base64)。
+ * 不带 pbkdf2$ 前缀的值视为旧的明文密码，校验通过后由调用方重新哈希（rehash-on-login）。
+ * 哈希计算在独立的有界线程池中执行：队列满或任务排队超过时限时直接失败（AuthBusyException），
+ * 登录洪峰只会拖慢登录本身，不会占满处理静态文件的连接线程。
+ */
+public class PasswordHasher {
+
+    private static final String PREFIX = "pbkdf2$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final int QUEUE_CAPACITY = 256;
+
+    private static int configuredIterations = 100_000;
+    private static int configuredThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private static long configuredMaxQueueMillis = 2_000;
+    private static PasswordHasher instance;
+
+    private final int iterations;
+    private final long maxQueueNanos;
+    private final ThreadPoolExecutor pool;
+    private final SecureRandom random = new SecureRandom();
+    // 未知用户也做一次等价的哈希，避免通过响应时间判断用户名是否存在
+    private final String dummyHash;
+
+    private PasswordHasher(int iterations, int threads, long maxQueueMillis) {
+        this.iterations = iterations;
+        this.maxQueueNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueMillis);
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                    Thread t = new Thread(r, "password-hash-" + counter.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.dummyHash = hashNow("dummy-password");
+    }
+
+    /**
+     * 设置迭代次数（成本）、线程数和最长排队时间，需在第一次 getInstance 之前调用
+     */
+    public static synchronized void configure(int iterations, int threads, long maxQueueMillis) {
+        configuredIterations = iterations;
+        configuredThreads = Math.max(1, threads);
+        configuredMaxQueueMillis = maxQueueMillis;
+    }
+
+    public static synchronized PasswordHasher getInstance() {
+        if (instance == null) {
+            instance = new PasswordHasher(configuredIterations, configuredThreads, configuredMaxQueueMillis);
+        }
+        return instance;
+    }
+
+    /**
+     * 已创建的实例，尚未创建时返回 null（不触发创建，供管理端口的探测使用）
+     */
+    public static synchronized PasswordHasher peekInstance() {
+        return instance;
+    }
+
+    /**
+     * 在哈希线程池中计算新密码的存储值
+     */
+    public String hash(String password) throws AuthBusyException {
+        return submit(() -> hashNow(password));
+    }
+
+    /**
+     * 在哈希线程池中执行一次认证任务（校验以及可能的重新哈希），调用线程阻塞等待结果
+     */
+    public <T> T submit(Callable<T> task) throws AuthBusyException {
+        long enqueued = System.nanoTime();
+        Future<T> future;
+        try {
+            future = pool.submit(() -> {
+                // 排队太久的请求客户端多半已经超时，直接放弃以尽快消化积压
+                if (System.nanoTime() - enqueued > maxQueueNanos) {
+                    throw new AuthBusyException("认证请求排队超时");
+                }
+                return task.call();
+            });
+        } catch (RejectedExecutionException e) {
+            throw new AuthBusyException("认证队列已满");
+        }
+        try {
+            return future.get(TimeUnit.NANOSECONDS.toMillis(maxQueueNanos) * 2 + 1_000, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            throw new AuthBusyException("认证超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthBusyException("等待认证时被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AuthBusyException) {
+                throw (AuthBusyException) e.getCause();
+            }
+            throw new IllegalStateException("密码哈希失败", e.getCause());
+        }
+    }
+
+    /**
+     * 校验密码（调用线程直接计算，应在 submit 的任务中调用）；stored 为 null 时做一次假校验并返回 false
+     */
+    public boolean verifyNow(String password, String stored) {
+        if (stored == null) {
+            verifyHash(password, dummyHash);
+            return false;
+        }
+        if (!stored.startsWith(PREFIX)) {
+            // 旧的明文密码：常量时间比较，并做一次等价的哈希，耗时与哈希值的校验相同
+            verifyHash(password, dummyHash);
+            return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8),
+                    password.getBytes(StandardCharsets.UTF_8));
+        }
+        return verifyHash(password, stored);
+    }
+
+    /**
+     * 是否为 pbkdf2$ 格式的存储值（否则视为明文）
+     */
+    public static boolean isHashed(String stored) {
+        return stored.startsWith(PREFIX);
+    }
+
+    /**
+     * 存储值是否需要升级：明文，或迭代次数与当前配置不同
+     */
+    public boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) {
+            return true;
+        }
+        String[] parts = stored.split("\\$");
+        return parts.length != 4 || !String.valueOf(iterations).equals(parts[1]);
+    }
+
+    /**
+     * 计算存储值（调用线程直接计算）
+     */
+    public String hashNow(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations);
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    private boolean verifyHash(String password, String stored) {
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            int storedIterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] expected = Base64.getDecoder().decode(parts[3]);
+            return MessageDigest.isEqual(expected, pbkdf2(password, salt, storedIterations));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("JDK 不支持 " + ALGORITHM, e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    public int getIterations() { return iterations; }
+    public int getQueueDepth() { return pool.getQueue().size(); }
+    public int getQueueCapacity() { return QUEUE_CAPACITY; }
+}
@@ -0,0 +1,138 @@
+package com.http.server.auth;
+
+import com.http.common.HttpRequest;
+import com.http.utils.HashedTimingWheel;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内存中的登录会话表。
+ * 登录成功后生成 256 位随机令牌，通过 Cookie 或 Authorization: Bearer 携带；
+ * 校验只是一次 ConcurrentHashMap 查找加过期时间比较，不涉及密码哈希。
+ * 过期清理交给哈希时间轮，不做周期性的全表扫描；查找时也会检查过期时间，时间轮的一个 tick 误差不影响正确性。
+ */
+public class SessionStore {
+
+    public static final String COOKIE_NAME = "SESSION";
+    private static final long DEFAULT_TTL_SECONDS = 30 * 60;
+    private static final int TOKEN_BYTES = 32;
+
+    private static SessionStore instance;
+
+    private final long ttlSeconds;
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final HashedTimingWheel<Session> expiry;
+
+    public SessionStore(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+        // 1 秒一格，512 格（约 8.5 分钟一圈），更长的 TTL 以圈数表示
+        this.expiry = new HashedTimingWheel<>(1, TimeUnit.SECONDS, 512,
+                session -> sessions.remove(session.token, session), "session-expiry");
+    }
+
+    public static synchronized SessionStore getInstance() {
+        if (instance == null) {
+            instance = new SessionStore(DEFAULT_TTL_SECONDS);
+        }
+        return instance;
+    }
+
+    /**
+     * 已创建的实例，尚未创建时返回 null（不触发创建，供管理端口的探测使用）
+     */
+    public static synchronized SessionStore peekInstance() {
+        return instance;
+    }
+
+    /**
+     * 为用户创建新会话
+     */
+    public Session create(String username) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        Session session = new Session(token, username, System.currentTimeMillis() + ttlSeconds * 1000);
+        session.timeout = expiry.schedule(session, ttlSeconds, TimeUnit.SECONDS);
+        sessions.put(token, session);
+        return session;
+    }
+
+    /**
+     * 查找有效会话，令牌不存在或已过期时返回 null
+     */
+    public Session get(String token) {
+        if (token == null) return null;
+        Session session = sessions.get(token);
+        if (session == null || session.expiresAt <= System.currentTimeMillis()) {
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * 从请求中取出令牌（Authorization: Bearer 优先，其次 Cookie）并查找会话
+     */
+    public Session get(HttpRequest request) {
+        return get(extractToken(request));
+    }
+
+    /**
+     * 注销会话
+     */
+    public boolean invalidate(String token) {
+        Session session = token == null ? null : sessions.remove(token);
+        if (session == null) return false;
+        session.timeout.cancel();
+        return true;
+    }
+
+    public static String extractToken(HttpRequest request) {
+        String auth = request.getHeaders().get("Authorization");
+        if (auth != null && auth.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return auth.substring(7).trim();
+        }
+        String cookie = request.getHeaders().get("Cookie");
+        if (cookie == null) return null;
+        for (String pair : cookie.split(";")) {
+            pair = pair.trim();
+            if (pair.startsWith(COOKIE_NAME + "=")) {
+                return pair.substring(COOKIE_NAME.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 登录响应中的 Set-Cookie 值
+     */
+    public String cookieFor(Session session) {
+        return COOKIE_NAME + "=" + session.token + "; Path=/; Max-Age=" + ttlSeconds + "; HttpOnly; SameSite=Lax";
+    }
+
+    public long getTtlSeconds() { return ttlSeconds; }
+    public int size() { return sessions.size(); }
+
+    /**
+     * 一个登录会话
+     */
+    public static class Session {
+        private final String token;
+        private final String username;
+        private final long expiresAt;
+        private volatile HashedTimingWheel.Timeout<Session> timeout;
+
+        Session(String token, String username, long expiresAt) {
+            this.token = token;
+            this.username = username;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getToken() { return token; }
+        public String getUsername() { return username; }
+        public long getExpiresAt() { return expiresAt; }
+    }
+}
@@ -0,0 +1,359 @@
+package com.http.server.auth;
+
+import com.http.utils.ConsoleWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 用户数据的预写日志 + 二进制快照。
+ * 日志文件 users-{代}.log 由定长前缀的记录组成：[int 长度][byte 类型][UTF 用户名][UTF 值][int CRC32]，
+ * 类型为写入（PUT）或删除（REMOVE，值为空串；当前只写 PUT，重放时仍识别之前版本写入的删除记录），
+ * 写入后通过组提交 fsync：同时到达的多个注册只做一次 fsync。
+ * 日志记录数达到阈值时在后台生成快照 users.snapshot 并切换到下一代日志，旧日志随即删除。
+ * 快照按 UserTable 的数组原样写出（第 2 版），恢复时整块读回，不逐条插入；仍可读取逐条记录的第 1 版快照。
+ * 启动时先读快照，再按代顺序重放其后的日志；日志尾部不完整或校验失败的记录（崩溃时的半条写入）被截掉。
+ */
+public class UserJournal {
+
+    private static final int SNAPSHOT_MAGIC = 0x55534E50; // "USNP"
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_VERSION_ENTRIES = 1; // 旧格式：[UTF 用户名][UTF 值] 逐条
+    private static final int SNAPSHOT_HEADER_BYTES = 16; // [int 魔数][int 版本][long 日志代号]
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_REMOVE = 2;
+    private static final int MAX_RECORD_BYTES = 256 * 1024;
+    // 自上次快照以来追加了这么多条记录就生成新快照
+    private static final long SNAPSHOT_THRESHOLD = 100_000;
+
+    private final Path dir;
+    private final Path snapshotFile;
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "user-snapshot");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean snapshotPending = new AtomicBoolean();
+
+    // 以下字段受 this 锁保护
+    private FileChannel log;
+    private long generation;
+    private long writtenSeq;
+    private long recordsSinceSnapshot;
+    private UserTable state;
+
+    // 组提交状态，受 syncLock 保护
+    private final Object syncLock = new Object();
+    private long syncedSeq;
+    private boolean syncing;
+
+    public UserJournal(Path dir) {
+        this.dir = dir;
+        this.snapshotFile = dir.resolve("users.snapshot");
+    }
+
+    /**
+     * 恢复数据到 target（快照 + 日志重放），之后打开当前代的日志用于追加。
+     * 恢复在临时表中进行，全部成功后才换入 target；失败时 target 保持原样。
+     * target 此后作为快照的数据来源，调用方对它的修改应先经过 append
+     */
+    public synchronized void load(UserTable target) throws IOException {
+        Files.createDirectories(dir);
+        long start = System.currentTimeMillis();
+        UserTable scratch = new UserTable();
+
+        long snapshotGeneration = readSnapshot(scratch);
+        generation = snapshotGeneration;
+        long replayed = 0;
+        List<Long> generations = listLogGenerations();
+        for (long gen : generations) {
+            if (gen < generation) {
+                Files.deleteIfExists(logPath(gen)); // 已被快照覆盖（上次删除前崩溃）
+                continue;
+            }
+            replayed += replay(logPath(gen), scratch);
+            generation = gen;
+        }
+        recordsSinceSnapshot = replayed;
+
+        log = FileChannel.open(logPath(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        log.position(log.size());
+        target.replaceWith(scratch);
+        this.state = target;
+        ConsoleWriter.logServer("用户数据已恢复: " + target.size() + " 个用户，重放日志 " + replayed
+                + " 条，耗时 " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * 追加一条记录并等待其落盘（与并发的其他追加共享 fsync）
+     */
+    public void append(String username, String value) throws IOException {
+        write(encode(TYPE_PUT, username, value));
+    }
+
+    private void write(byte[] record) throws IOException {
+        long seq;
+        synchronized (this) {
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            while (buffer.hasRemaining()) {
+                log.write(buffer);
+            }
+            seq = ++writtenSeq;
+            recordsSinceSnapshot++;
+            if (recordsSinceSnapshot >= SNAPSHOT_THRESHOLD && snapshotPending.compareAndSet(false, true)) {
+                snapshotExecutor.execute(this::snapshotQuietly);
+            }
+        }
+        awaitDurable(seq);
+    }
+
+    /**
+     * 组提交：第一个等待者负责 fsync，期间到达的记录由下一轮 fsync 一并覆盖
+     */
+    private void awaitDurable(long seq) throws IOException {
+        synchronized (syncLock) {
+            while (syncedSeq < seq) {
+                if (syncing) {
+                    try {
+                        syncLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("等待用户日志落盘时被中断");
+                    }
+                    continue;
+                }
+                syncing = true;
+                long target;
+                FileChannel channel;
+                synchronized (this) {
+                    target = writtenSeq;
+                    channel = log;
+                }
+                try {
+                    channel.force(false);
+                    syncedSeq = Math.max(syncedSeq, target);
+                } catch (java.nio.channels.ClosedChannelException e) {
+                    // 快照已切换日志：旧日志在关闭前已整体落盘，重新取当前日志再同步
+                } finally {
+                    syncing = false;
+                    syncLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * 生成快照：在锁内切换到新一代日志并复制当前数据，锁外写快照文件，最后删除旧日志
+     */
+    public void snapshot() throws IOException {
+        UserTable copy;
+        long newGeneration;
+        FileChannel oldLog;
+        synchronized (this) {
+            // 切换前让旧日志落盘：此后旧日志不再写入，等待中的组提交也不会漏掉其中的记录
+            oldLog = log;
+            oldLog.force(false);
+            newGeneration = generation + 1;
+            log = FileChannel.open(logPath(newGeneration), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            log.position(log.size());
+            generation = newGeneration;
+            recordsSinceSnapshot = 0;
+            copy = state.copy(); // 数组整体拷贝，锁内耗时很短
+        }
+        oldLog.close();
+
+        Path tmp = dir.resolve("users.snapshot.tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 20), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeLong(newGeneration);
+            copy.writeArrays(out);
+            out.flush();
+            long crc = checked.getChecksum().getValue();
+            out.writeInt((int) crc);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (long gen : listLogGenerations()) {
+            if (gen < newGeneration) {
+                Files.deleteIfExists(logPath(gen));
+            }
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            ConsoleWriter.logError("生成用户快照失败: " + e.getMessage());
+        } finally {
+            snapshotPending.set(false);
+        }
+    }
+
+    /**
+     * 读快照，返回其对应的日志代号；没有快照时返回 0。
+     * 先对原始字节整体校验 CRC，通过后才解码，损坏的表头不会导致按其声明的大小分配内存
+     */
+    private long readSnapshot(UserTable target) throws IOException {
+        if (!Files.exists(snapshotFile)) {
+            return 0;
+        }
+        long size = Files.size(snapshotFile);
+        if (size < SNAPSHOT_HEADER_BYTES + 4) {
+            throw new IOException("用户快照不完整: " + snapshotFile);
+        }
+        verifySnapshotChecksum(size);
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshotFile), 1 << 20))) {
+            int version = in.readInt() == SNAPSHOT_MAGIC ? in.readInt() : -1;
+            if (version != SNAPSHOT_VERSION && version != SNAPSHOT_VERSION_ENTRIES) {
+                throw new IOException("用户快照格式不正确: " + snapshotFile);
+            }
+            long gen = in.readLong();
+            if (version == SNAPSHOT_VERSION) {
+                target.readArrays(in, size - SNAPSHOT_HEADER_BYTES - 4);
+            } else {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    target.put(in.readUTF(), in.readUTF());
+                }
+            }
+            return gen;
+        }
+    }
+
+    /**
+     * 流式计算除末尾 4 字节外全部内容的 CRC32，与末尾记录的值比较
+     */
+    private void verifySnapshotChecksum(long size) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(snapshotFile), 1 << 20)) {
+            byte[] buffer = new byte[64 * 1024];
+            long remaining = size - 4;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    throw new EOFException("用户快照不完整: " + snapshotFile);
+                }
+                crc.update(buffer, 0, read);
+                remaining -= read;
+            }
+            if (new DataInputStream(in).readInt() != (int) crc.getValue()) {
+                throw new IOException("用户快照校验失败: " + snapshotFile);
+            }
+        }
+    }
+
+    /**
+     * 重放一个日志文件，返回有效记录数；遇到不完整或损坏的记录时截断文件尾部
+     */
+    private long replay(Path file, UserTable target) throws IOException {
+        long count = 0;
+        long validEnd = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 20))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > MAX_RECORD_BYTES) break;
+                byte[] payload = new byte[length];
+                int crc;
+                try {
+                    in.readFully(payload);
+                    crc = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 check = new CRC32();
+                check.update(payload);
+                if ((int) check.getValue() != crc) break;
+
+                DataInputStream record = new DataInputStream(new java.io.ByteArrayInputStream(payload));
+                byte type = record.readByte();
+                if (type == TYPE_PUT) {
+                    target.put(record.readUTF(), record.readUTF());
+                } else if (type == TYPE_REMOVE) {
+                    target.remove(record.readUTF());
+                }
+                count++;
+                validEnd += 4 + length + 4;
+            }
+        }
+        if (validEnd < Files.size(file)) {
+            ConsoleWriter.logError("用户日志尾部不完整，已截断: " + file + " @ " + validEnd);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(validEnd);
+                channel.force(true);
+            }
+        }
+        return count;
+    }
+
+    private static byte[] encode(byte type, String username, String value) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(64);
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeByte(type);
+        payload.writeUTF(username);
+        payload.writeUTF(value);
+        byte[] data = payloadBytes.toByteArray();
+        if (data.length > MAX_RECORD_BYTES) {
+            throw new IOException("用户记录过大");
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        ByteBuffer record = ByteBuffer.allocate(4 + data.length + 4);
+        record.putInt(data.length).put(data).putInt((int) crc.getValue());
+        return record.array();
+    }
+
+    private List<Long> listLogGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "users-*.log")) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    generations.add(Long.parseLong(name.substring("users-".length(), name.length() - ".log".length())));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    private Path logPath(long gen) {
+        return dir.resolve("users-" + gen + ".log");
+    }
+}
@@ -1,8 +1,15 @@
 package com.http.server.auth;
 
-import java.io.FileReader;
-import java.util.Map;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.http.utils.ConsoleWriter;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -10,11 +17,58 @@ import org.json.JSONTokener;
 
 public class UserManager {
     private static UserManager instance;
-    private Map<String, String> users = new ConcurrentHashMap<>();
+    // 初始用户（users.json）：加载时不做哈希，明文密码在第一次登录成功时替换为哈希（只在内存中），
+    // 启动与重新加载的耗时与用户数无关；明文的校验也做一次等价的哈希，耗时与注册用户相同。
+    // 文件变化时整体重建后替换引用，读取方无需加锁
+    private volatile ConcurrentMap<String, String> seeds = new ConcurrentHashMap<>();
+    // 运行期注册与密码升级：紧凑的开放寻址表，百万级用户时内存不到 ConcurrentHashMap 的一半。
+    // 与初始用户同名的条目（初始用户在其注册之后才加入 users.json）不删除，查找时被初始用户遮蔽，
+    // 初始用户从 users.json 移除后恢复可用
+    private final UserTable users = new UserTable();
+    // 注册数据的预写日志与快照；为 null 表示持久化不可用（注册只保存在内存中）
+    private UserJournal journal;
+    // 注册的密码与 users.json 中的明文密码均以加盐 PBKDF2 存储/校验
+    private final PasswordHasher hasher = PasswordHasher.getInstance();
+    private final Path jsonFile;
 
-    // 私有构造方法，读取 JSON 文件初始化 users
+    // 私有构造方法：users.json 作为初始用户，再叠加日志中持久化的注册；之后监视 users.json 的修改
     private UserManager(String jsonFilePath) {
-        try (FileReader reader = new FileReader(jsonFilePath)) {
+        this.jsonFile = Paths.get(jsonFilePath);
+        try {
+            seeds = parseSeeds(jsonFile);
+        } catch (Exception e) {
+            // JSON文件加载失败，使用空的用户列表
+        }
+
+        UserJournal journal = new UserJournal(Paths.get("data", "users"));
+        try {
+            journal.load(users);
+            this.journal = journal;
+        } catch (IOException e) {
+            ConsoleWriter.logError("加载用户日志失败，注册将不会持久化: " + e.getMessage());
+        }
+
+        new UsersFileWatcher(jsonFile, this::reloadSeeds).start();
+    }
+
+    /**
+     * 重新解析 users.json 并替换初始用户表；解析失败（例如文件正写到一半）时保留旧表
+     */
+    private void reloadSeeds() {
+        ConcurrentMap<String, String> parsed;
+        try {
+            parsed = parseSeeds(jsonFile);
+        } catch (Exception e) {
+            ConsoleWriter.logError("users.json 解析失败，继续使用原有初始用户: " + e.getMessage());
+            return;
+        }
+        seeds = parsed;
+        ConsoleWriter.logServer("已重新加载 users.json: " + parsed.size() + " 个初始用户");
+    }
+
+    private static ConcurrentMap<String, String> parseSeeds(Path file) throws IOException {
+        ConcurrentMap<String, String> parsed = new ConcurrentHashMap<>();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
             JSONTokener tokener = new JSONTokener(reader);
             JSONObject obj = new JSONObject(tokener);
             JSONArray credentials = obj.getJSONArray("credentials");
@@ -22,12 +76,11 @@ public class UserManager {
             for (int i = 0; i < credentials.length(); i++) {
                 JSONObject user = credentials.getJSONObject(i);
                 String username = user.getString("username");
-                String password = user.getString("password"); // 如果是 hashed，可改成 password_sha256
-                users.put(username, password);
+                String password = user.getString("password"); // 明文或 pbkdf2$ 格式
+                parsed.put(username, password);
             }
-        } catch (Exception e) {
-            // JSON文件加载失败，使用空的用户列表
         }
+        return parsed;
     }
 
     // 单例获取方法（默认路径可传入）
@@ -38,22 +91,77 @@ public class UserManager {
         return instance;
     }
 
-    // 注册方法
-    public boolean register(String username, String password) {
+    // 注册方法：密码在哈希线程池中计算后再保存
+    public boolean register(String username, String password) throws AuthBusyException {
         if (username == null || username.trim().isEmpty() ||
-                password == null || password.length() < 3) {
+                password == null || password.length() < 3 ||
+                username.getBytes(StandardCharsets.UTF_8).length > UserTable.MAX_USERNAME_BYTES) {
             return false;
         }
-        if (users.containsKey(username)) {
+        if (seeds.containsKey(username) || users.containsKey(username)) {
             return false;
         }
-        users.put(username, password);
+        String hashed = hasher.hash(password);
+        // putIfAbsent 先占住用户名，避免并发注册同名用户
+        if (users.putIfAbsent(username, hashed) != null) {
+            return false;
+        }
+        if (journal != null) {
+            try {
+                journal.append(username, hashed);
+            } catch (IOException e) {
+                users.remove(username, hashed);
+                ConsoleWriter.logError("写入用户日志失败: " + e.getMessage());
+                return false;
+            }
+        }
         return true;
     }
 
-    // 登录方法
-    public boolean login(String username, String password) {
-        String storedPassword = users.get(username);
-        return storedPassword != null && storedPassword.equals(password);
+    // 登录方法：校验在哈希线程池中进行；运行期数据中明文或旧成本的密码校验通过后顺带重新哈希
+    public boolean login(String username, String password) throws AuthBusyException {
+        if (username == null || password == null) {
+            return false;
+        }
+        return hasher.submit(() -> {
+            // users.json 中定义的账号以文件为准，修改后立即生效；重新加载只替换引用，这里读到的总是某个完整版本
+            ConcurrentMap<String, String> current = seeds;
+            String seed = current.get(username);
+            if (seed != null) {
+                if (!hasher.verifyNow(password, seed)) {
+                    return false;
+                }
+                if (!PasswordHasher.isHashed(seed)) {
+                    // 明文初始用户第一次登录成功：换成哈希，此后不再保留明文（期间文件已重新加载时替换失败，无妨）
+                    current.replace(username, seed, hasher.hashNow(password));
+                }
+                return true;
+            }
+            String stored = users.get(username);
+            if (!hasher.verifyNow(password, stored)) {
+                return false;
+            }
+            if (hasher.needsRehash(stored)) {
+                upgrade(username, stored, password);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * 把明文或旧参数的密码替换为当前参数的哈希，并写入日志（重启后不再需要迁移）
+     */
+    private void upgrade(String username, String stored, String password) {
+        String upgraded = hasher.hashNow(password);
+        if (!users.replace(username, stored, upgraded)) {
+            return; // 并发登录已完成升级
+        }
+        if (journal != null) {
+            try {
+                journal.append(username, upgraded);
+            } catch (IOException e) {
+                ConsoleWriter.logError("写入用户日志失败（密码升级）: " + e.getMessage());
+            }
+        }
     }
-}
+}
\ No newline at end of file
@@ -0,0 +1,588 @@
+package com.http.server.auth;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+
+/**
+ * 紧凑的用户表：用户名 → 密码存储值。
+ * 用户按插入顺序分配 id，各字段存放在按 id 下标的基本类型数组中：
+ *   用户名以 UTF-8 字节顺序存入一个共享的 byte[]（arena），
+ *   PBKDF2 存储值拆成定长记录 [int 迭代次数][16 字节盐][32 字节哈希] 存入 records；
+ *   查找用线性探测的开放寻址索引 int[]（存 id+1，0 为空）。
+ * 不符合定长格式的值（早期数据中遗留的明文密码、其他长度的盐或哈希）放在旁路的 legacy 表中，记录里迭代次数为 0。
+ * 每个用户约 90 字节，而 ConcurrentHashMap&lt;String,String&gt; 约 210 字节（见 UserTableFootprint）。
+ * 写操作持有 StampedLock 写锁（插入即“不存在才插入”，是原子的）；读操作先乐观读，校验失败再退回读锁。
+ */
+public class UserTable {
+
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BYTES = 32;
+    private static final int RECORD_BYTES = 4 + SALT_BYTES + HASH_BYTES;
+    public static final int MAX_USERNAME_BYTES = 1024;
+    private static final String PBKDF2_PREFIX = "pbkdf2$";
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final StampedLock lock = new StampedLock();
+    private final ConcurrentHashMap<String, String> legacy = new ConcurrentHashMap<>();
+
+    // 以下字段只在写锁内修改
+    private int[] index;
+    private int[] hashes;
+    private int[] keyOffsets;
+    private short[] keyLengths; // -1 表示已删除
+    private byte[] arena;
+    private int arenaSize;
+    private byte[] records;
+    private int count;   // 已分配的 id 数
+    private int live;    // 有效用户数
+    private int used;    // 索引中被占用的槽位数（删除采用回移，不留墓碑，等于 live）
+
+    public UserTable() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public UserTable(int expectedUsers) {
+        int capacity = Math.max(INITIAL_CAPACITY, expectedUsers);
+        index = new int[tableSizeFor(capacity)];
+        hashes = new int[capacity];
+        keyOffsets = new int[capacity];
+        keyLengths = new short[capacity];
+        records = new byte[capacity * RECORD_BYTES];
+        arena = new byte[capacity * 12];
+    }
+
+    /**
+     * 查询用户的密码存储值，不存在返回 null
+     */
+    public String get(String username) {
+        byte[] key = username.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key);
+        byte[] record = new byte[RECORD_BYTES];
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int id = find(key, hash);
+                if (id >= 0) {
+                    System.arraycopy(records, id * RECORD_BYTES, record, 0, RECORD_BYTES);
+                }
+                if (lock.validate(stamp)) {
+                    String value = id < 0 ? null : decode(username, record);
+                    if (id < 0 || value != null) {
+                        return value;
+                    }
+                    // legacy 值恰好被并发迁移，退回读锁重查
+                }
+            } catch (RuntimeException e) {
+                // 与扩容并发时可能读到不一致的数组，退回读锁
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            int id = find(key, hash);
+            if (id < 0) return null;
+            System.arraycopy(records, id * RECORD_BYTES, record, 0, RECORD_BYTES);
+            return decode(username, record);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    public boolean containsKey(String username) {
+        return get(username) != null;
+    }
+
+    /**
+     * 原子的“不存在才插入”，返回已存在的值（插入成功时返回 null）
+     */
+    public String putIfAbsent(String username, String value) {
+        byte[] key = checkedKey(username);
+        long stamp = lock.writeLock();
+        try {
+            int hash = hash(key);
+            int id = find(key, hash);
+            if (id >= 0) {
+                return readValue(username, id);
+            }
+            insert(username, key, hash, value);
+            return null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 插入或覆盖（日志重放、种子加载）
+     */
+    public void put(String username, String value) {
+        byte[] key = checkedKey(username);
+        long stamp = lock.writeLock();
+        try {
+            int hash = hash(key);
+            int id = find(key, hash);
+            if (id >= 0) {
+                writeValue(username, id, value);
+            } else {
+                insert(username, key, hash, value);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 当前值等于 expected 时替换为 value（密码升级）
+     */
+    public boolean replace(String username, String expected, String value) {
+        byte[] key = username.getBytes(StandardCharsets.UTF_8);
+        long stamp = lock.writeLock();
+        try {
+            int id = find(key, hash(key));
+            if (id < 0 || !expected.equals(readValue(username, id))) {
+                return false;
+            }
+            writeValue(username, id, value);
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 当前值等于 expected 时删除（注册写日志失败时回滚）
+     */
+    public boolean remove(String username, String expected) {
+        return remove(username, expected, true);
+    }
+
+    /**
+     * 无条件删除（重放日志中的删除记录），返回是否存在
+     */
+    public boolean remove(String username) {
+        return remove(username, null, false);
+    }
+
+    private boolean remove(String username, String expected, boolean conditional) {
+        byte[] key = username.getBytes(StandardCharsets.UTF_8);
+        long stamp = lock.writeLock();
+        try {
+            int hash = hash(key);
+            int id = find(key, hash);
+            if (id < 0 || (conditional && !expected.equals(readValue(username, id)))) {
+                return false;
+            }
+            deleteFromIndex(id, hash);
+            keyLengths[id] = -1; // id 与 arena 空间不回收，删除只发生在罕见的回滚与清除中
+            legacy.remove(username);
+            live--;
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        long stamp = lock.tryOptimisticRead();
+        int size = live;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                size = live;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 复制一份只读快照（数组整体拷贝，比逐条复制到 HashMap 快且省内存），供生成快照文件时在锁外遍历
+     */
+    public UserTable copy() {
+        long stamp = lock.readLock();
+        try {
+            UserTable copy = new UserTable(1);
+            copy.index = index.clone();
+            copy.hashes = hashes.clone();
+            copy.keyOffsets = keyOffsets.clone();
+            copy.keyLengths = keyLengths.clone();
+            copy.arena = Arrays.copyOf(arena, arenaSize);
+            copy.arenaSize = arenaSize;
+            copy.records = Arrays.copyOf(records, count * RECORD_BYTES);
+            copy.count = count;
+            copy.live = live;
+            copy.used = used;
+            copy.legacy.putAll(legacy);
+            return copy;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 按数组原样写出（快照文件用）：恢复时整块读回即可，不必逐条解码、插入
+     */
+    void writeArrays(DataOutput out) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            out.writeInt(count);
+            out.writeInt(live);
+            out.writeInt(arenaSize);
+            out.writeInt(index.length);
+            writeInts(out, hashes, count);
+            writeInts(out, keyOffsets, count);
+            ByteBuffer lengths = ByteBuffer.allocate(count * 2);
+            lengths.asShortBuffer().put(keyLengths, 0, count);
+            out.write(lengths.array());
+            out.write(arena, 0, arenaSize);
+            out.write(records, 0, count * RECORD_BYTES);
+            writeInts(out, index, index.length);
+            out.writeInt(legacy.size());
+            for (Map.Entry<String, String> e : legacy.entrySet()) {
+                out.writeUTF(e.getKey());
+                out.writeUTF(e.getValue());
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 读回 writeArrays 写出的数组，替换当前内容（只用于启动时的空表）。
+     * available 为输入中最多可读的字节数：表头声明的各数组必须装得下，否则在分配之前就拒绝
+     */
+    void readArrays(DataInput in, long available) throws IOException {
+        int newCount = in.readInt();
+        int newLive = in.readInt();
+        int newArenaSize = in.readInt();
+        int indexLength = in.readInt();
+        if (newCount < 0 || newCount > Integer.MAX_VALUE / RECORD_BYTES || newLive < 0 || newLive > newCount
+                || newArenaSize < 0 || indexLength < 16 || Integer.bitCount(indexLength) != 1
+                || (long) newLive * 4 > indexLength * 3L) {
+            throw new IOException("用户快照中的表头不正确");
+        }
+        // 索引只在装载率超过 3/4 时翻倍，不会超过按 id 数算出的大小的两倍
+        long required = 16 + (long) newCount * (4 + 4 + 2 + RECORD_BYTES) + newArenaSize + indexLength * 4L + 4;
+        if (indexLength > 2L * tableSizeFor(Math.max(INITIAL_CAPACITY, newCount)) || required > available) {
+            throw new IOException("用户快照中的表头与文件大小不符");
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, newCount);
+        int[] newHashes = readInts(in, newCount, capacity);
+        int[] newOffsets = readInts(in, newCount, capacity);
+        byte[] lengthBytes = new byte[newCount * 2];
+        in.readFully(lengthBytes);
+        short[] newLengths = new short[capacity];
+        ByteBuffer.wrap(lengthBytes).asShortBuffer().get(newLengths, 0, newCount);
+        byte[] newArena = new byte[Math.max(newArenaSize, capacity * 12)];
+        in.readFully(newArena, 0, newArenaSize);
+        byte[] newRecords = new byte[capacity * RECORD_BYTES];
+        in.readFully(newRecords, 0, newCount * RECORD_BYTES);
+        int[] newIndex = readInts(in, indexLength, indexLength);
+        for (int id = 0; id < newCount; id++) {
+            if (newLengths[id] >= 0 && (newOffsets[id] < 0 || newOffsets[id] + newLengths[id] > newArenaSize)) {
+                throw new IOException("用户快照中的键偏移越界");
+            }
+        }
+        for (int slot : newIndex) {
+            if (slot < 0 || slot > newCount) {
+                throw new IOException("用户快照中的索引越界");
+            }
+        }
+        int legacyCount = in.readInt();
+        Map<String, String> newLegacy = new HashMap<>();
+        for (int i = 0; i < legacyCount; i++) {
+            newLegacy.put(in.readUTF(), in.readUTF());
+        }
+
+        long stamp = lock.writeLock();
+        try {
+            hashes = newHashes;
+            keyOffsets = newOffsets;
+            keyLengths = newLengths;
+            arena = newArena;
+            arenaSize = newArenaSize;
+            records = newRecords;
+            index = newIndex;
+            count = newCount;
+            live = newLive;
+            used = newLive;
+            legacy.clear();
+            legacy.putAll(newLegacy);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 用 source 的内容整体替换当前内容（启动时在临时表中恢复完毕后换入，source 之后不再使用）
+     */
+    void replaceWith(UserTable source) {
+        long stamp = lock.writeLock();
+        try {
+            hashes = source.hashes;
+            keyOffsets = source.keyOffsets;
+            keyLengths = source.keyLengths;
+            arena = source.arena;
+            arenaSize = source.arenaSize;
+            records = source.records;
+            index = source.index;
+            count = source.count;
+            live = source.live;
+            used = source.used;
+            legacy.clear();
+            legacy.putAll(source.legacy);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static void writeInts(DataOutput out, int[] values, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length * 4);
+        buffer.asIntBuffer().put(values, 0, length);
+        out.write(buffer.array());
+    }
+
+    private static int[] readInts(DataInput in, int length, int capacity) throws IOException {
+        byte[] bytes = new byte[length * 4];
+        in.readFully(bytes);
+        int[] values = new int[capacity];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(values, 0, length);
+        return values;
+    }
+
+    /**
+     * 遍历所有用户（调用期间持有读锁，写操作会等待；大表请先 copy）
+     */
+    public void forEach(BiConsumer<String, String> action) {
+        long stamp = lock.readLock();
+        try {
+            for (int id = 0; id < count; id++) {
+                if (keyLengths[id] < 0) continue;
+                String username = new String(arena, keyOffsets[id], keyLengths[id], StandardCharsets.UTF_8);
+                action.accept(username, readValue(username, id));
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 估算占用的堆内存（字节），用于与 ConcurrentHashMap 比较
+     */
+    public long estimatedBytes() {
+        long stamp = lock.readLock();
+        try {
+            long bytes = 4L * index.length + 4L * hashes.length + 4L * keyOffsets.length
+                    + 2L * keyLengths.length + arena.length + records.length + 6 * 16;
+            for (Map.Entry<String, String> e : legacy.entrySet()) {
+                // CHM 节点 + 两个 String（对象头与 byte[]/char[]）
+                bytes += 32 + 2 * 40 + e.getKey().length() * 2L + e.getValue().length() * 2L;
+            }
+            return bytes;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int find(byte[] key, int hash) {
+        int[] table = index;
+        int mask = table.length - 1;
+        int i = hash & mask;
+        while (true) {
+            int slot = table[i];
+            if (slot == 0) return -1;
+            int id = slot - 1;
+            if (hashes[id] == hash && keyEquals(id, key)) return id;
+            i = (i + 1) & mask;
+        }
+    }
+
+    private boolean keyEquals(int id, byte[] key) {
+        if (keyLengths[id] != key.length) return false;
+        int offset = keyOffsets[id];
+        for (int i = 0; i < key.length; i++) {
+            if (arena[offset + i] != key[i]) return false;
+        }
+        return true;
+    }
+
+    private void insert(String username, byte[] key, int hash, String value) {
+        if (count == hashes.length) {
+            int capacity = hashes.length + (hashes.length >> 1);
+            hashes = Arrays.copyOf(hashes, capacity);
+            keyOffsets = Arrays.copyOf(keyOffsets, capacity);
+            keyLengths = Arrays.copyOf(keyLengths, capacity);
+            records = Arrays.copyOf(records, capacity * RECORD_BYTES);
+        }
+        if (arenaSize + key.length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length + (arena.length >> 1), arenaSize + key.length));
+        }
+        if ((used + 1) * 4L > index.length * 3L) {
+            rehash(index.length * 2);
+        }
+
+        int id = count;
+        System.arraycopy(key, 0, arena, arenaSize, key.length);
+        keyOffsets[id] = arenaSize;
+        keyLengths[id] = (short) key.length;
+        hashes[id] = hash;
+        arenaSize += key.length;
+        writeValue(username, id, value);
+        count++;
+        live++;
+        used++;
+
+        int mask = index.length - 1;
+        int i = hash & mask;
+        while (index[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        index[i] = id + 1;
+    }
+
+    /**
+     * 扩容：新建索引数组，填好后再整体替换，乐观读者看到的始终是完整的某一版本
+     */
+    private void rehash(int size) {
+        int[] table = new int[size];
+        int mask = size - 1;
+        for (int slot : index) {
+            if (slot == 0) continue;
+            int i = hashes[slot - 1] & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = slot;
+        }
+        index = table;
+    }
+
+    /**
+     * 线性探测的回移删除：把后续同一探测链上的条目前移，不留墓碑
+     */
+    private void deleteFromIndex(int id, int hash) {
+        int mask = index.length - 1;
+        int i = hash & mask;
+        while (index[i] != id + 1) {
+            i = (i + 1) & mask;
+        }
+        int hole = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            int slot = index[j];
+            if (slot == 0) break;
+            int home = hashes[slot - 1] & mask;
+            // home 不在 (hole, j] 区间内（考虑回绕）时，该条目可以移到空洞处
+            boolean movable = hole <= j ? (home <= hole || home > j) : (home <= hole && home > j);
+            if (movable) {
+                index[hole] = slot;
+                hole = j;
+            }
+        }
+        index[hole] = 0;
+        used--;
+    }
+
+    private void writeValue(String username, int id, String value) {
+        int offset = id * RECORD_BYTES;
+        if (encode(value, records, offset)) {
+            legacy.remove(username);
+        } else {
+            // 非定长格式：迭代次数置 0，值放旁路表（先写旁路表，读者看到 0 时一定能查到）
+            legacy.put(username, value);
+            Arrays.fill(records, offset, offset + RECORD_BYTES, (byte) 0);
+        }
+    }
+
+    private String readValue(String username, int id) {
+        byte[] record = Arrays.copyOfRange(records, id * RECORD_BYTES, (id + 1) * RECORD_BYTES);
+        return decode(username, record);
+    }
+
+    private String decode(String username, byte[] record) {
+        int iterations = ((record[0] & 0xFF) << 24) | ((record[1] & 0xFF) << 16)
+                | ((record[2] & 0xFF) << 8) | (record[3] & 0xFF);
+        if (iterations == 0) {
+            return legacy.get(username);
+        }
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        return PBKDF2_PREFIX + iterations
+                + "$" + encoder.encodeToString(Arrays.copyOfRange(record, 4, 4 + SALT_BYTES))
+                + "$" + encoder.encodeToString(Arrays.copyOfRange(record, 4 + SALT_BYTES, RECORD_BYTES));
+    }
+
+    /**
+     * 把 pbkdf2$迭代次数$盐$哈希 编码为定长记录，格式不符（明文、盐或哈希长度不同）时返回 false
+     */
+    private static boolean encode(String value, byte[] out, int offset) {
+        if (!value.startsWith(PBKDF2_PREFIX)) return false;
+        String[] parts = value.split("\\$");
+        if (parts.length != 4) return false;
+        try {
+            int iterations = Integer.parseInt(parts[1]);
+            byte[] salt = Base64.getDecoder().decode(parts[2]);
+            byte[] hash = Base64.getDecoder().decode(parts[3]);
+            if (iterations <= 0 || salt.length != SALT_BYTES || hash.length != HASH_BYTES) return false;
+            // 重新编码必须与原值一致，否则读出的值会与写入的不同
+            Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+            if (!encoder.encodeToString(salt).equals(parts[2]) || !encoder.encodeToString(hash).equals(parts[3])
+                    || !String.valueOf(iterations).equals(parts[1])) {
+                return false;
+            }
+            out[offset] = (byte) (iterations >>> 24);
+            out[offset + 1] = (byte) (iterations >>> 16);
+            out[offset + 2] = (byte) (iterations >>> 8);
+            out[offset + 3] = (byte) iterations;
+            System.arraycopy(salt, 0, out, offset + 4, SALT_BYTES);
+            System.arraycopy(hash, 0, out, offset + 4 + SALT_BYTES, HASH_BYTES);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static byte[] checkedKey(String username) {
+        byte[] key = username.getBytes(StandardCharsets.UTF_8);
+        if (key.length > MAX_USERNAME_BYTES) {
+            throw new IllegalArgumentException("用户名过长");
+        }
+        return key;
+    }
+
+    private static int hash(byte[] key) {
+        int h = 0x811C9DC5; // FNV-1a，再做一次 murmur 混合
+        for (byte b : key) {
+            h = (h ^ (b & 0xFF)) * 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity * 4 / 3) - 1) << 1;
+        return Math.max(size, 16);
+    }
+
+    /**
+     * 按 Map 接口导出（小表调试用）
+     */
+    Map<String, String> toMap() {
+        Map<String, String> map = new HashMap<>();
+        forEach(map::put);
+        return map;
+    }
+}
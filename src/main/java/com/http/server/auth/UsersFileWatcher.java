@@ -0,0 +1,119 @@
+package com.http.server.auth;
+
+import com.http.utils.ConsoleWriter;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监视 users.json 所在目录，文件被修改、替换或新建时在后台线程中回调 onChange。
+ * 编辑器保存时往往连续产生多个事件（截断、写入、重命名），收到事件后先静默一小段时间再合并为一次回调；
+ * 修改时间和大小都没变时不重复回调。
+ */
+public class UsersFileWatcher {
+
+    // 合并连续事件的静默时间
+    private static final long SETTLE_MILLIS = 200;
+
+    private final Path file;
+    private final Runnable onChange;
+    private long lastModified;
+    private long lastSize;
+
+    public UsersFileWatcher(Path file, Runnable onChange) {
+        this.file = file.toAbsolutePath().normalize();
+        this.onChange = onChange;
+        this.lastModified = modifiedTime();
+        this.lastSize = size();
+    }
+
+    /**
+     * 启动守护线程开始监视，目录不存在或不支持监视时返回 false
+     */
+    public boolean start() {
+        WatchService watcher;
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            file.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | RuntimeException e) {
+            ConsoleWriter.logError("无法监视用户文件 " + file + ": " + e.getMessage());
+            return false;
+        }
+        Thread thread = new Thread(() -> run(watcher), "users-watch");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    private void run(WatchService watcher) {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean relevant = drain(key);
+                // 静默期内的后续事件一并吸收
+                WatchKey next;
+                while ((next = watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    relevant |= drain(next);
+                }
+                if (relevant && changed()) {
+                    try {
+                        onChange.run();
+                    } catch (RuntimeException e) {
+                        ConsoleWriter.logError("重新加载用户文件失败: " + e.getMessage());
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 退出监视
+        }
+    }
+
+    private boolean drain(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            Object context = event.context();
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || (context instanceof Path && file.getFileName().equals(context))) {
+                relevant = true;
+            }
+        }
+        key.reset();
+        return relevant;
+    }
+
+    private boolean changed() {
+        long modified = modifiedTime();
+        long size = size();
+        if (modified == lastModified && size == lastSize) {
+            return false;
+        }
+        lastModified = modified;
+        lastSize = size;
+        return true;
+    }
+
+    private long modifiedTime() {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private long size() {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+}
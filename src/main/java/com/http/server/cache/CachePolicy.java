@@ -0,0 +1,126 @@
+package com.http.server.cache;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 静态资源缓存策略表：按路径模式或 MIME 类型决定 Cache-Control 指令。
+ * 规则按添加顺序匹配，第一条命中的规则生效。
+ */
+public class CachePolicy {
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME
+            .withZone(ZoneId.of("GMT"));
+
+    // 文件名中带内容哈希（如 app.3f2a9c1d.js）的资源可以永久缓存
+    private static final String FINGERPRINTED = ".*\\.[0-9a-fA-F]{8,}\\.[A-Za-z0-9]+$";
+
+    private static final CachePolicy DEFAULT = createDefault();
+
+    private final List<Rule> rules = new ArrayList<>();
+    private String fallback = "public, max-age=600";
+
+    /**
+     * 默认策略：指纹资源 immutable，HTML 每次协商，图片缓存一天，其他文本缓存一小时。
+     */
+    public static CachePolicy getDefault() {
+        return DEFAULT;
+    }
+
+    private static CachePolicy createDefault() {
+        CachePolicy policy = new CachePolicy();
+        policy.addPathRule(FINGERPRINTED, "public, max-age=31536000, immutable");
+        policy.addMimeRule("text/html", "no-cache");
+        policy.addMimeRule("image/", "public, max-age=86400");
+        policy.addMimeRule("text/", "public, max-age=3600");
+        return policy;
+    }
+
+    /**
+     * 添加路径规则，pathRegex 针对去掉前导斜杠的相对路径做完整匹配。
+     */
+    public CachePolicy addPathRule(String pathRegex, String directive) {
+        rules.add(new Rule(Pattern.compile(pathRegex), null, directive));
+        return this;
+    }
+
+    /**
+     * 添加 MIME 规则，按前缀匹配（如 "image/" 匹配所有图片类型）。
+     */
+    public CachePolicy addMimeRule(String mimePrefix, String directive) {
+        rules.add(new Rule(null, mimePrefix, directive));
+        return this;
+    }
+
+    public CachePolicy setFallback(String directive) {
+        this.fallback = directive;
+        return this;
+    }
+
+    /**
+     * 返回该资源对应的 Cache-Control 指令
+     */
+    public String directiveFor(String path, String mimeType) {
+        for (Rule rule : rules) {
+            if (rule.matches(path, mimeType)) {
+                return rule.directive;
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * 根据指令计算 Expires 头：带 max-age 时为当前时间加 max-age，
+     * no-cache / no-store 时为当前时间（立即过期），其他情况返回 null。
+     */
+    public static String expiresFor(String directive, long nowMillis) {
+        if (directive == null) return null;
+        long maxAge = parseMaxAge(directive);
+        if (maxAge >= 0) {
+            return HTTP_DATE.format(Instant.ofEpochMilli(nowMillis + maxAge * 1000));
+        }
+        if (directive.contains("no-cache") || directive.contains("no-store")) {
+            return HTTP_DATE.format(Instant.ofEpochMilli(nowMillis));
+        }
+        return null;
+    }
+
+    private static long parseMaxAge(String directive) {
+        int idx = directive.indexOf("max-age=");
+        if (idx < 0) return -1;
+        int start = idx + "max-age=".length();
+        int end = start;
+        while (end < directive.length() && Character.isDigit(directive.charAt(end))) {
+            end++;
+        }
+        if (end == start) return -1;
+        try {
+            return Long.parseLong(directive.substring(start, end));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static class Rule {
+        private final Pattern pathPattern;
+        private final String mimePrefix;
+        private final String directive;
+
+        Rule(Pattern pathPattern, String mimePrefix, String directive) {
+            this.pathPattern = pathPattern;
+            this.mimePrefix = mimePrefix;
+            this.directive = directive;
+        }
+
+        boolean matches(String path, String mimeType) {
+            if (pathPattern != null) {
+                return path != null && pathPattern.matcher(path).matches();
+            }
+            return mimeType != null && mimeType.startsWith(mimePrefix);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.http.server.cache;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Web 根目录的文件元数据（stat）缓存。
+ * 同时缓存“文件不存在”的负结果，扫描器请求大量随机路径时不会反复触发磁盘查询。
+ * 条目在 TTL 过期后重新 stat，文件变化最多延迟一个 TTL 被感知。
+ */
+public class FileMetaCache {
+
+    private static final long DEFAULT_TTL_MILLIS = 2_000;
+    private static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private static FileMetaCache instance;
+
+    private final ConcurrentHashMap<Path, FileMeta> entries = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    public FileMetaCache(long ttlMillis, int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    public static synchronized FileMetaCache getInstance() {
+        if (instance == null) {
+            instance = new FileMetaCache(DEFAULT_TTL_MILLIS, DEFAULT_MAX_ENTRIES);
+        }
+        return instance;
+    }
+
+    /**
+     * 获取文件元数据，TTL 内直接返回缓存结果（包括不存在的结果）
+     */
+    public FileMeta stat(Path path) {
+        long now = System.currentTimeMillis();
+        FileMeta meta = entries.get(path);
+        if (meta != null && now - meta.checkedAt < ttlMillis) {
+            return meta;
+        }
+
+        File file = path.toFile();
+        // lastModified() 对不存在的文件返回 0，可少一次 exists() 调用
+        long lastModified = file.lastModified();
+        boolean isFile = lastModified != 0 && file.isFile();
+        meta = new FileMeta(isFile, lastModified, isFile ? file.length() : 0, now);
+
+        // 控制内存：随机路径过多时整体清空，重新积累热点
+        if (entries.size() >= maxEntries) {
+            entries.clear();
+        }
+        entries.put(path, meta);
+        return meta;
+    }
+
+    /**
+     * 使某个路径的缓存立即失效（例如上传覆盖了文件）
+     */
+    public void invalidate(Path path) {
+        entries.remove(path);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 单个文件的元数据快照
+     */
+    public static class FileMeta {
+        private final boolean isFile;
+        private final long lastModified;
+        private final long length;
+        private final long checkedAt;
+
+        FileMeta(boolean isFile, long lastModified, long length, long checkedAt) {
+            this.isFile = isFile;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.checkedAt = checkedAt;
+        }
+
+        public boolean isFile() { return isFile; }
+        public long getLastModified() { return lastModified; }
+        public long getLength() { return length; }
+    }
+}
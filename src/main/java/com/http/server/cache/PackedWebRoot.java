@@ -0,0 +1,72 @@
+package com.http.server.cache;
+
+import com.http.utils.ConsoleWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 以打包文件作为 Web 根目录的数据源。
+ * 部署新版本只需原子替换打包文件（rename），这里定期检查修改时间并切换到新的映射，
+ * 正在使用旧映射的请求不受影响。
+ */
+public class PackedWebRoot {
+
+    private static final long CHECK_INTERVAL_MILLIS = 2_000;
+
+    private static volatile PackedWebRoot installed;
+
+    private final Path packFile;
+    private final CachePolicy cachePolicy;
+    private volatile WebPack current;
+    private volatile long nextCheck;
+
+    private PackedWebRoot(Path packFile, CachePolicy cachePolicy, WebPack pack) {
+        this.packFile = packFile;
+        this.cachePolicy = cachePolicy;
+        this.current = pack;
+        this.nextCheck = System.currentTimeMillis() + CHECK_INTERVAL_MILLIS;
+    }
+
+    /**
+     * 启用打包数据源，之后新建的 StaticFileHandler 都从该打包文件提供内容
+     */
+    public static synchronized PackedWebRoot install(Path packFile, CachePolicy cachePolicy) throws IOException {
+        installed = new PackedWebRoot(packFile, cachePolicy, WebPack.open(packFile, cachePolicy));
+        return installed;
+    }
+
+    /**
+     * 当前启用的打包数据源，未启用时返回 null
+     */
+    public static PackedWebRoot getInstalled() {
+        return installed;
+    }
+
+    /**
+     * 获取当前映射；检查间隔到期时顺带检查是否有新部署的打包文件
+     */
+    public WebPack current() {
+        long now = System.currentTimeMillis();
+        if (now >= nextCheck) {
+            reloadIfChanged(now);
+        }
+        return current;
+    }
+
+    private synchronized void reloadIfChanged(long now) {
+        if (now < nextCheck) return; // 其他线程已检查过
+        nextCheck = now + CHECK_INTERVAL_MILLIS;
+        try {
+            long modified = Files.getLastModifiedTime(packFile).toMillis();
+            if (modified != current.getPackModified()) {
+                current = WebPack.open(packFile, cachePolicy);
+                ConsoleWriter.logServer("已切换到新的打包文件: " + packFile + "（" + current.size() + " 个文件）");
+            }
+        } catch (IOException e) {
+            // 新包不可用时继续使用旧映射
+            ConsoleWriter.logError("重新加载打包文件失败: " + e.getMessage());
+        }
+    }
+}
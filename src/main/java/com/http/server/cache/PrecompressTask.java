@@ -0,0 +1,89 @@
+package com.http.server.cache;
+
+import com.http.common.MimeType;
+import com.http.utils.ConsoleWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 为 Web 根目录下值得压缩的文本资源生成 .gz 兄弟文件，供 StaticFileHandler 直接发送。
+ * 可在服务器启动时执行，也可离线运行：java com.http.server.cache.PrecompressTask [webRoot]
+ * JDK 不自带 Brotli 编码器，.br 文件需由外部工具生成，服务器检测到后会优先使用。
+ */
+public class PrecompressTask {
+
+    // 太小的文件压缩收益抵不过 Content-Encoding 的开销
+    private static final int MIN_SIZE = 256;
+
+    private final Path webRoot;
+
+    public PrecompressTask(Path webRoot) {
+        this.webRoot = webRoot.toAbsolutePath().normalize();
+    }
+
+    /**
+     * 遍历 Web 根目录生成 .gz 文件，返回新生成（或更新）的文件数
+     */
+    public int run() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(webRoot)) {
+            files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+
+        int generated = 0;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(".gz") || name.endsWith(".br")) continue;
+            if (!MimeType.isCompressible(MimeType.getMimeType(name))) continue;
+            if (Files.size(file) < MIN_SIZE) continue;
+
+            Path gz = file.resolveSibling(name + ".gz");
+            FileTime sourceTime = Files.getLastModifiedTime(file);
+            if (Files.exists(gz) && Files.getLastModifiedTime(gz).compareTo(sourceTime) >= 0) {
+                continue; // 已是最新
+            }
+            if (compress(file, gz)) {
+                generated++;
+            }
+        }
+        return generated;
+    }
+
+    private boolean compress(Path source, Path target) throws IOException {
+        byte[] original = Files.readAllBytes(source);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(original.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer) {
+            { def.setLevel(Deflater.BEST_COMPRESSION); }
+        }) {
+            gzip.write(original);
+        }
+        byte[] compressed = buffer.toByteArray();
+        if (compressed.length >= original.length) {
+            Files.deleteIfExists(target);
+            return false; // 压缩后反而更大，不生成
+        }
+
+        // 先写临时文件再原子替换，避免请求读到写了一半的 .gz
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(tmp, compressed);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return true;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path root = args.length > 0 ? Paths.get(args[0]) : Paths.get("src", "main", "java", "web");
+        int count = new PrecompressTask(root).run();
+        ConsoleWriter.logServer("预压缩完成，生成 " + count + " 个 .gz 文件");
+    }
+}
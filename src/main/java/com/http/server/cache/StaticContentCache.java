@@ -0,0 +1,108 @@
+package com.http.server.cache;
+
+import com.http.server.jfr.ServerEvents;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 静态文件内容缓存：把小文件的字节常驻内存，命中时不再读磁盘。
+ * 条目带有文件修改时间，调用方传入的修改时间不一致时视为过期并重新读取。
+ * 总容量超限时随机淘汰旧条目，超过单文件上限的大文件不进入缓存。
+ */
+public class StaticContentCache {
+
+    private static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+    private static final int DEFAULT_MAX_FILE_BYTES = 1024 * 1024;
+
+    private static StaticContentCache instance;
+
+    private final ConcurrentHashMap<Path, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final long maxBytes;
+    private final int maxFileBytes;
+
+    public StaticContentCache(long maxBytes, int maxFileBytes) {
+        this.maxBytes = maxBytes;
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    public static synchronized StaticContentCache getInstance() {
+        if (instance == null) {
+            instance = new StaticContentCache(DEFAULT_MAX_BYTES, DEFAULT_MAX_FILE_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * 读取文件内容：缓存命中且修改时间一致时直接返回，否则读磁盘并尝试放入缓存
+     */
+    public byte[] read(Path path, long lastModified, long length) throws IOException {
+        Entry entry = entries.get(path);
+        if (entry != null && entry.lastModified == lastModified) {
+            hits.incrementAndGet();
+            ServerEvents.get().cacheLookup("static", path, true, entry.content.length);
+            return entry.content;
+        }
+        misses.incrementAndGet();
+        ServerEvents.get().cacheLookup("static", path, false, length);
+        byte[] content = Files.readAllBytes(path);
+        if (length <= maxFileBytes && content.length <= maxFileBytes) {
+            put(path, new Entry(content, lastModified));
+        }
+        return content;
+    }
+
+    private void put(Path path, Entry entry) {
+        Entry old = entries.put(path, entry);
+        long delta = entry.content.length - (old != null ? old.content.length : 0);
+        long total = totalBytes.addAndGet(delta);
+        if (total <= maxBytes) return;
+
+        // 超出容量：淘汰其他条目直到回到上限以内
+        Iterator<java.util.Map.Entry<Path, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes.get() > maxBytes && it.hasNext()) {
+            java.util.Map.Entry<Path, Entry> e = it.next();
+            if (e.getKey().equals(path)) continue;
+            if (entries.remove(e.getKey(), e.getValue())) {
+                totalBytes.addAndGet(-e.getValue().content.length);
+            }
+        }
+    }
+
+    public void invalidate(Path path) {
+        Entry old = entries.remove(path);
+        if (old != null) {
+            totalBytes.addAndGet(-old.content.length);
+        }
+    }
+
+    public int size() { return entries.size(); }
+    public long getTotalBytes() { return totalBytes.get(); }
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    /**
+     * 命中/未命中计数清零（启动预热结束后调用，预热的合成请求不计入 /status 的命中率）
+     */
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    private static class Entry {
+        private final byte[] content;
+        private final long lastModified;
+
+        Entry(byte[] content, long lastModified) {
+            this.content = content;
+            this.lastModified = lastModified;
+        }
+    }
+}
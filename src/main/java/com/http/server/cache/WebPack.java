@@ -0,0 +1,241 @@
+package com.http.server.cache;
+
+import com.http.common.MimeType;
+import com.http.utils.ConsoleWriter;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 打包后的 Web 根目录：所有静态文件拼接在一个文件中，启动时只做一次内存映射。
+ *
+ * 文件格式（大端）：
+ *   magic "WPAK" | version int | entryCount int
+ *   entryCount 个索引项：pathLength short | path UTF-8 | offset long | length int | lastModified long
+ *   数据区：各文件内容依次排列
+ *
+ * 打开后按路径建立内存索引并预先计算响应头，一次查找只是一次哈希探测，不触发任何文件系统调用。
+ * 整个包不超过 2 GB（单次映射的上限），打包时超限直接报错；打开时校验头部与每个索引项的范围。
+ */
+public class WebPack {
+
+    private static final int MAGIC = 0x5750414B; // "WPAK"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    // 索引项中路径之后的定长部分：offset long | length int | lastModified long
+    private static final int INDEX_FIXED_BYTES = 8 + 4 + 8;
+    private static final int MIN_INDEX_ENTRY_BYTES = 2 + INDEX_FIXED_BYTES;
+    // 单个 MappedByteBuffer 最多映射 Integer.MAX_VALUE 字节
+    private static final long MAX_PACK_BYTES = Integer.MAX_VALUE;
+    // HTTP 日期只能表示四位年份
+    private static final long MAX_LAST_MODIFIED = Instant.parse("9999-12-31T23:59:59Z").toEpochMilli();
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME
+            .withZone(ZoneId.of("GMT"));
+
+    private final MappedByteBuffer data;
+    private final Map<String, Entry> index;
+    private final long packModified;
+
+    private WebPack(MappedByteBuffer data, Map<String, Entry> index, long packModified) {
+        this.data = data;
+        this.index = index;
+        this.packModified = packModified;
+    }
+
+    /**
+     * 映射并解析打包文件，为每个条目预先计算 Content-Type / Last-Modified / Cache-Control
+     */
+    public static WebPack open(Path packFile, CachePolicy cachePolicy) throws IOException {
+        long packModified = Files.getLastModifiedTime(packFile).toMillis();
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(packFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAX_PACK_BYTES) {
+                throw new IOException("打包文件超过 2 GB，无法映射: " + packFile + "（" + size + " 字节）");
+            }
+            // 映射在通道关闭后仍然有效
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+
+        // 截断或损坏的文件一律报告为 IOException，调用方据此继续使用旧映射或回退到文件系统
+        if (data.remaining() < HEADER_BYTES || data.getInt() != MAGIC) {
+            throw new IOException("不是有效的 Web 打包文件: " + packFile);
+        }
+        int version = data.getInt();
+        if (version != VERSION) {
+            throw new IOException("不支持的打包文件版本: " + version);
+        }
+        int count = data.getInt();
+        if (count < 0 || (long) count * MIN_INDEX_ENTRY_BYTES > data.remaining()) {
+            throw new IOException("打包文件索引损坏: 条目数 " + count);
+        }
+        Map<String, Entry> index = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            int pathLength = data.getShort() & 0xFFFF;
+            if (data.remaining() < pathLength + INDEX_FIXED_BYTES) {
+                throw new IOException("打包文件索引被截断: 第 " + i + " 项");
+            }
+            byte[] pathBytes = new byte[pathLength];
+            data.get(pathBytes);
+            String path = new String(pathBytes, StandardCharsets.UTF_8);
+            long offset = data.getLong();
+            int length = data.getInt();
+            long lastModified = data.getLong();
+            if (offset < 0 || length < 0 || offset + length > data.capacity()
+                    || lastModified < 0 || lastModified > MAX_LAST_MODIFIED) {
+                throw new IOException("打包文件索引损坏: " + path);
+            }
+
+            String contentType = MimeType.getMimeType(path);
+            index.put(path, new Entry(offset, length, lastModified, contentType,
+                    HTTP_DATE.format(Instant.ofEpochMilli(lastModified)),
+                    cachePolicy.directiveFor(path, contentType),
+                    MimeType.isCompressible(contentType)));
+        }
+        // 数据区必须位于索引之后
+        int dataStart = data.position();
+        for (Entry entry : index.values()) {
+            if (entry.offset < dataStart) {
+                throw new IOException("打包文件索引损坏: 内容偏移 " + entry.offset + " 落在索引区内");
+            }
+        }
+        return new WebPack(data, index, packModified);
+    }
+
+    /**
+     * 按相对路径（不含前导斜杠）查找条目，不存在时返回 null
+     */
+    public Entry lookup(String path) {
+        return index.get(path);
+    }
+
+    /**
+     * 复制条目内容（HttpResponse 以 byte[] 作为响应体）
+     */
+    public byte[] read(Entry entry) {
+        byte[] content = new byte[entry.length];
+        ByteBuffer view = data.duplicate();
+        view.position((int) entry.offset);
+        view.get(content);
+        return content;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    long getPackModified() {
+        return packModified;
+    }
+
+    /**
+     * 把 Web 根目录打包为单个文件：先写临时文件再原子替换，服务器侧只会看到完整的新包
+     */
+    public static int build(Path webRoot, Path packFile) throws IOException {
+        Path root = webRoot.toAbsolutePath().normalize();
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(root)) {
+            files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+
+        // 先检查大小：超过 2 GB 的包无法映射，不生成半可用的文件
+        List<byte[]> names = new ArrayList<>();
+        long[] sizes = new long[files.size()];
+        long headerSize = HEADER_BYTES;
+        long dataSize = 0;
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            byte[] name = root.relativize(file).toString().replace('\\', '/').getBytes(StandardCharsets.UTF_8);
+            if (name.length > 0xFFFF) {
+                throw new IOException("路径过长，无法打包: " + file);
+            }
+            names.add(name);
+            headerSize += 2 + name.length + INDEX_FIXED_BYTES;
+            sizes[i] = Files.size(file);
+            dataSize += sizes[i];
+        }
+        if (headerSize + dataSize > MAX_PACK_BYTES) {
+            throw new IOException("Web 根目录总大小 " + (headerSize + dataSize) + " 字节，超过打包文件上限 2 GB");
+        }
+
+        Path tmp = packFile.toAbsolutePath().resolveSibling(packFile.getFileName() + ".tmp");
+        try (OutputStream fileOut = Files.newOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new java.io.BufferedOutputStream(fileOut, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(files.size());
+            long offset = headerSize;
+            for (int i = 0; i < files.size(); i++) {
+                Path file = files.get(i);
+                out.writeShort(names.get(i).length);
+                out.write(names.get(i));
+                out.writeLong(offset);
+                out.writeInt((int) sizes[i]); // 总大小已检查，不会溢出
+                out.writeLong(Files.getLastModifiedTime(file).toMillis());
+                offset += sizes[i];
+            }
+            for (Path file : files) {
+                Files.copy(file, out);
+            }
+        }
+        Files.move(tmp, packFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return files.size();
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path root = args.length > 0 ? Paths.get(args[0]) : Paths.get("src", "main", "java", "web");
+        Path pack = args.length > 1 ? Paths.get(args[1]) : Paths.get("web.pack");
+        int count = build(root, pack);
+        ConsoleWriter.logServer("打包完成: " + count + " 个文件 -> " + pack);
+    }
+
+    /**
+     * 索引项：内容位置与预先计算好的响应头
+     */
+    public static class Entry {
+        private final long offset;
+        private final int length;
+        private final long lastModified;
+        private final String contentType;
+        private final String lastModifiedHeader;
+        private final String cacheControl;
+        private final boolean compressible;
+
+        Entry(long offset, int length, long lastModified, String contentType,
+              String lastModifiedHeader, String cacheControl, boolean compressible) {
+            this.offset = offset;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.contentType = contentType;
+            this.lastModifiedHeader = lastModifiedHeader;
+            this.cacheControl = cacheControl;
+            this.compressible = compressible;
+        }
+
+        public int getLength() { return length; }
+        public long getLastModified() { return lastModified; }
+        public String getContentType() { return contentType; }
+        public String getLastModifiedHeader() { return lastModifiedHeader; }
+        public String getCacheControl() { return cacheControl; }
+        public boolean isCompressible() { return compressible; }
+    }
+}
@@ -4,21 +4,41 @@ import com.http.common.HttpRequest;
 import com.http.common.HttpResponse;
 import com.http.common.HttpStatus;
 import com.http.common.MimeType;
-
+import com.http.server.upload.MultipartParser;
+import com.http.server.upload.UploadPersister;
+import com.http.server.upload.UploadStore;
+import com.http.utils.ConsoleWriter;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class FileUploadHandler {
-    
-    private final String uploadDir;
+
+    // 内容嗅探只看开头这么多字节
+    private static final int SNIFF_BYTES = 4096;
+    // 写盘缓冲区大小：每个上传占用的内存与文件大小无关
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // 按内容寻址的去重存储，所有连接共享
+    private final UploadStore store;
+    // 持久化阶段：按配置的级别等待后台批量 fsync
+    private final UploadPersister persister;
     
     public FileUploadHandler() {
-        this.uploadDir = "src/main/java/web/uploads/";
-        // 确保上传目录存在
-        new File(uploadDir).mkdirs();
+        this.store = UploadStore.getInstance();
+        this.persister = UploadPersister.getInstance();
     }
     
     /**
@@ -36,49 +56,267 @@ public class FileUploadHandler {
             return response;
         }
         
+        // 浏览器表单上传：按 multipart/form-data 流式解析
+        String boundary = MultipartParser.extractBoundary(request.getHeaders().get("Content-Type"));
+        if (boundary != null) {
+            return handleMultipart(request, boundary);
+        }
+
+        UploadStore.PendingUpload pending = null;
         try {
-            byte[] body = request.getBody();
-            if (body == null || body.length == 0) {
+            // 边读边写：请求体从 socket 经固定大小的缓冲区写入存储的临时文件，同时计算 SHA-256
+            InputStream in = request.getBodyStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            // 先读满开头用于嗅探扩展名的字节
+            int headLength = 0;
+            while (headLength < SNIFF_BYTES) {
+                int read = in.read(buffer, headLength, SNIFF_BYTES - headLength);
+                if (read == -1) break;
+                headLength += read;
+            }
+            if (headLength == 0) {
                 return buildBadRequest("No file data received");
             }
-            
-            // 根据请求内容确定文件扩展名
-            String fileExtension = determineFileExtension(request, body);
-            String filename = "uploaded_" + System.currentTimeMillis() + fileExtension;
-            File uploadFile = new File(uploadDir + filename);
-            
-            try (FileOutputStream fos = new FileOutputStream(uploadFile)) {
-                fos.write(body);
+            String fileExtension = determineFileExtension(request.getHeaders().get("Content-Type"), buffer, headLength);
+
+            pending = store.newUpload();
+            pending.write(buffer, 0, headLength);
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                pending.write(buffer, 0, read);
             }
-            
+            UploadStore.Entry entry = pending.commit(fileExtension);
+            pending = null;
+            // 达到配置的持久化级别后才确认；未达到时撤销登记，客户端重试不会留下孤立的记录
+            persistOrRelease(store, persister, Collections.singletonList(entry));
+
             // 成功响应
-            String responseBody = "{\"status\":\"success\",\"message\":\"File uploaded successfully\",\"filename\":\"" + filename + "\",\"size\":" + body.length + "}";
+            byte[] responseBody = toJson(entry).put("status", "success")
+                    .put("message", "File uploaded successfully").toString().getBytes(StandardCharsets.UTF_8);
             response.setStatusCode(HttpStatus.OK);
             response.setReasonPhrase(HttpStatus.getReasonPhrase(HttpStatus.OK));
-            response.setBody(responseBody.getBytes(StandardCharsets.UTF_8));
+            response.setBody(responseBody);
             response.addHeader("Content-Type", "application/json; charset=utf-8");
-            response.addHeader("Content-Length", String.valueOf(responseBody.length()));
+            response.addHeader("Content-Length", String.valueOf(responseBody.length));
             response.addHeader("Connection", "close");
-            
+
             return response;
-            
+
+        } catch (UploadPersister.DurabilityTimeoutException e) {
+            return buildUnavailable("Upload not yet durable: " + e.getMessage());
         } catch (IOException e) {
             return buildInternalError("Failed to save uploaded file: " + e.getMessage());
         } catch (Exception e) {
             return buildInternalError("Unexpected error: " + e.getMessage());
+        } finally {
+            if (pending != null) {
+                pending.abort();
+            }
+        }
+    }
+
+    /**
+     * 上传结果的 JSON 描述；filename 可通过 /api/files/{filename} 下载，
+     * deleteToken 只在此处返回一次，删除时放在 Upload-Delete-Token 头中
+     */
+    static JSONObject toJson(UploadStore.Entry entry) {
+        JSONObject json = new JSONObject();
+        json.put("id", entry.getId());
+        json.put("filename", entry.getFilename());
+        json.put("size", entry.getSize());
+        json.put("sha256", entry.getDigest());
+        json.put("deduplicated", entry.isDeduplicated());
+        if (entry.getDeleteToken() != null) {
+            json.put("deleteToken", entry.getDeleteToken());
         }
+        return json;
     }
     
+    /**
+     * 处理 multipart/form-data 上传：每个文件部分直接写入各自的临时文件，
+     * 普通字段作为请求参数保存（request.getParam 可取到），支持一次上传多个文件
+     */
+    private HttpResponse handleMultipart(HttpRequest request, String boundary) {
+        final JSONArray files = new JSONArray();
+        final Map<String, String> fields = new LinkedHashMap<>();
+        MultipartPartWriter writer = new MultipartPartWriter(files, fields);
+        try {
+            new MultipartParser(request.getBodyStream(), boundary).parse(writer);
+            // 所有文件部分一起排队，通常落在同一批 fsync 中
+            persistOrRelease(store, persister, writer.committed);
+            writer.committed.clear();
+        } catch (UploadPersister.DurabilityTimeoutException e) {
+            return buildUnavailable("Upload not yet durable: " + e.getMessage());
+        } catch (MultipartParser.MalformedException e) {
+            return buildBadRequest("Malformed multipart body: " + e.getMessage());
+        } catch (IOException e) {
+            return buildInternalError("Failed to save uploaded file: " + e.getMessage());
+        } finally {
+            writer.cleanup();
+        }
+        request.setFormParams(fields);
+
+        if (files.length() == 0) {
+            return buildBadRequest("No file data received");
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("status", "success");
+        result.put("message", "File uploaded successfully");
+        result.put("files", files);
+        result.put("fields", new JSONObject(fields));
+        byte[] body = result.toString().getBytes(StandardCharsets.UTF_8);
+
+        HttpResponse response = new HttpResponse();
+        response.setVersion("HTTP/1.1");
+        response.setStatusCode(HttpStatus.OK);
+        response.setReasonPhrase(HttpStatus.getReasonPhrase(HttpStatus.OK));
+        response.setBody(body);
+        response.addHeader("Content-Type", "application/json; charset=utf-8");
+        response.addHeader("Content-Length", String.valueOf(body.length));
+        response.addHeader("Connection", "close");
+        return response;
+    }
+
+    /**
+     * 按持久化级别确认已登记的上传；失败（包括 503 的超时）时释放这些登记再抛出，
+     * 否则每次重试都会多留下一条索引记录和一次引用计数
+     */
+    static void persistOrRelease(UploadStore store, UploadPersister persister, List<UploadStore.Entry> entries)
+            throws IOException {
+        List<Path> blobs = new ArrayList<>(entries.size());
+        for (UploadStore.Entry entry : entries) {
+            blobs.add(store.blobPath(entry));
+        }
+        try {
+            persister.persist(store, blobs);
+        } catch (IOException e) {
+            releaseAll(store, entries);
+            throw e;
+        }
+    }
+
+    /**
+     * 撤销一组登记（请求失败时调用，release 对已释放的 ID 是空操作）
+     */
+    static void releaseAll(UploadStore store, List<UploadStore.Entry> entries) {
+        for (UploadStore.Entry entry : entries) {
+            try {
+                store.release(entry.getId());
+            } catch (IOException e) {
+                ConsoleWriter.logError("撤销上传登记失败: " + entry.getId() + " " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * multipart 解析回调：文件部分写入上传存储，结束时嗅探扩展名并登记
+     */
+    private class MultipartPartWriter implements MultipartParser.PartHandler {
+        private final JSONArray files;
+        private final Map<String, String> fields;
+        // 本请求已登记的上传，请求成功后清空；请求失败时由 cleanup 撤销
+        private final List<UploadStore.Entry> committed = new ArrayList<>();
+        private UploadStore.PendingUpload current;
+
+        MultipartPartWriter(JSONArray files, Map<String, String> fields) {
+            this.files = files;
+            this.fields = fields;
+        }
+
+        @Override
+        public OutputStream startFile(MultipartParser.Part part) throws IOException {
+            current = store.newUpload();
+            return current;
+        }
+
+        @Override
+        public void endFile(MultipartParser.Part part, long size) throws IOException {
+            current.close();
+            if (size == 0 && (part.getFilename() == null || part.getFilename().isEmpty())) {
+                // 表单中未选择文件的空文件框
+                current.abort();
+                current = null;
+                return;
+            }
+
+            String extension = determineStoredExtension(current.getTempFile(), part.getContentType(), part.getFilename());
+            UploadStore.Entry entry = current.commit(extension);
+            current = null;
+            committed.add(entry);
+
+            JSONObject saved = toJson(entry);
+            saved.put("field", part.getName());
+            saved.put("originalName", part.getFilename());
+            files.put(saved);
+        }
+
+        @Override
+        public void field(String name, String value) {
+            fields.put(name, value);
+        }
+
+        /**
+         * 解析中途失败时清理未完成的临时文件，并撤销已登记的文件部分
+         */
+        void cleanup() {
+            if (current != null) {
+                current.abort();
+            }
+            releaseAll(store, committed);
+            committed.clear();
+        }
+    }
+
+    /**
+     * 已写入磁盘的上传文件的扩展名：先看内容（读开头字节），再看原文件名，最后看 Content-Type。
+     * multipart 文件部分与断点续传的最终文件共用此规则
+     */
+    static String determineStoredExtension(File file, String contentType, String originalName) throws IOException {
+        byte[] head = new byte[SNIFF_BYTES];
+        int length = 0;
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while (length < head.length && (read = in.read(head, length, head.length - length)) != -1) {
+                length += read;
+            }
+        }
+        String sniffed = determineFileExtension(contentType, head, length);
+        if (".jpg".equals(sniffed) || ".png".equals(sniffed)) {
+            return sniffed;
+        }
+
+        String original = originalName;
+        int dot = original == null ? -1 : original.lastIndexOf('.');
+        if (dot >= 0) {
+            String extension = original.substring(dot).toLowerCase();
+            // 只接受 MimeType 认识的扩展名，避免客户端指定任意后缀
+            if (extension.matches("\\.[a-z0-9]{1,10}")
+                    && !"application/octet-stream".equals(MimeType.getMimeType(extension))) {
+                return extension;
+            }
+        }
+        return sniffed;
+    }
+
+    /**
+     * 错误响应体；消息可能来自异常，由 JSONObject 负责转义
+     */
+    static String errorJson(String message) {
+        return new JSONObject().put("status", "error").put("message", String.valueOf(message)).toString();
+    }
+
     private HttpResponse buildBadRequest(String message) {
         HttpResponse response = new HttpResponse();
         response.setVersion("HTTP/1.1");
         response.setStatusCode(400);
         response.setReasonPhrase("Bad Request");
         
-        String body = "{\"status\":\"error\",\"message\":\"" + message + "\"}";
-        response.setBody(body.getBytes(StandardCharsets.UTF_8));
+        byte[] body = errorJson(message).getBytes(StandardCharsets.UTF_8);
+        response.setBody(body);
         response.addHeader("Content-Type", "application/json; charset=utf-8");
-        response.addHeader("Content-Length", String.valueOf(body.length()));
+        response.addHeader("Content-Length", String.valueOf(body.length));
         response.addHeader("Connection", "close");
         
         return response;
@@ -90,21 +328,40 @@ public class FileUploadHandler {
         response.setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
         response.setReasonPhrase(HttpStatus.getReasonPhrase(HttpStatus.INTERNAL_SERVER_ERROR));
         
-        String body = "{\"status\":\"error\",\"message\":\"" + message + "\"}";
-        response.setBody(body.getBytes(StandardCharsets.UTF_8));
+        byte[] body = errorJson(message).getBytes(StandardCharsets.UTF_8);
+        response.setBody(body);
         response.addHeader("Content-Type", "application/json; charset=utf-8");
-        response.addHeader("Content-Length", String.valueOf(body.length()));
+        response.addHeader("Content-Length", String.valueOf(body.length));
         response.addHeader("Connection", "close");
         
         return response;
     }
     
+    /**
+     * 持久化队列已满或 fsync 未在限定时间内完成：本次登记已撤销，客户端可稍后重新上传
+     */
+    static HttpResponse buildUnavailable(String message) {
+        HttpResponse response = new HttpResponse();
+        response.setVersion("HTTP/1.1");
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.setReasonPhrase(HttpStatus.getReasonPhrase(HttpStatus.SERVICE_UNAVAILABLE));
+
+        byte[] body = errorJson(message).getBytes(StandardCharsets.UTF_8);
+        response.setBody(body);
+        response.addHeader("Content-Type", "application/json; charset=utf-8");
+        response.addHeader("Content-Length", String.valueOf(body.length));
+        response.addHeader("Retry-After", "1");
+        response.addHeader("Connection", "close");
+
+        return response;
+    }
+
     /**
      * 根据请求和内容确定文件扩展名
      */
-    private String determineFileExtension(HttpRequest request, byte[] body) {
+    private static String determineFileExtension(String contentType, byte[] body, int length) {
         // 优先使用文件内容检测（Magic Numbers）- 最可靠的方法
-        if (body.length >= 4) {
+        if (length >= 4) {
             // JPEG文件头检测
             if (body[0] == (byte)0xFF && body[1] == (byte)0xD8) {
                 return ".jpg";
@@ -117,7 +374,6 @@ public class FileUploadHandler {
         }
         
         // 然后检查 Content-Type 头，优先按 MimeType 规则处理
-        String contentType = request.getHeaders().get("Content-Type");
         if (contentType != null) {
             String ct = contentType.toLowerCase();
             // 已知类型映射（与 MimeType 支持一致）
@@ -137,9 +393,9 @@ public class FileUploadHandler {
         }
         
         // 最后检查是否为文本内容
-        if (isTextContent(body)) {
+        if (isTextContent(body, length)) {
             // 基于内容特征判断是否为 HTML
-            String head = new String(body, 0, Math.min(body.length, 4096), StandardCharsets.UTF_8).toLowerCase();
+            String head = new String(body, 0, Math.min(length, 4096), StandardCharsets.UTF_8).toLowerCase();
             if (head.contains("<html") || head.contains("<!doctype html")) {
                 return ".html";
             }
@@ -153,11 +409,11 @@ public class FileUploadHandler {
     /**
      * 检查内容是否为文本类型
      */
-    private boolean isTextContent(byte[] body) {
-        if (body.length == 0) return true;
+    private static boolean isTextContent(byte[] body, int length) {
+        if (length == 0) return true;
         
         int textChars = 0;
-        int totalChars = Math.min(body.length, 1024); // 只检查前1024字节
+        int totalChars = Math.min(length, 1024); // 只检查前1024字节
         
         for (int i = 0; i < totalChars; i++) {
             byte b = body[i];
@@ -0,0 +1,135 @@
+package com.http.server.handler;
+
+import com.http.common.HttpRequest;
+import com.http.common.HttpResponse;
+import com.http.common.HttpStatus;
+import com.http.server.cache.CachePolicy;
+import com.http.server.cache.FileMetaCache;
+import com.http.server.cache.StaticContentCache;
+import com.http.server.image.ImageVariantCache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * 图片缩放接口：GET/HEAD /img/{path}?w={宽度}
+ * 只接受 Web 根目录下的 JPEG / PNG，宽度必须是 ALLOWED_WIDTHS 之一（防止任意尺寸撑爆缓存），
+ * 不带 w 时返回原图。
+ */
+public class ImageHandler {
+
+    public static final String PREFIX = "/img/";
+
+    // 允许的目标宽度，升序
+    private static final int[] ALLOWED_WIDTHS = {64, 128, 200, 320, 480, 640, 960, 1280};
+
+    private final Path webRoot;
+    private final CachePolicy cachePolicy = CachePolicy.getDefault();
+    private final FileMetaCache metaCache = FileMetaCache.getInstance();
+    private final ImageVariantCache variants = ImageVariantCache.getInstance();
+
+    public ImageHandler() {
+        this.webRoot = StaticFileHandler.DEFAULT_WEB_ROOT.toAbsolutePath().normalize();
+    }
+
+    public HttpResponse handle(HttpRequest request) {
+        String method = request.getMethod();
+        if (!"GET".equalsIgnoreCase(method) && !"HEAD".equalsIgnoreCase(method)) {
+            return buildText(HttpStatus.METHOD_NOT_ALLOWED, "405 Method Not Allowed");
+        }
+
+        String relative = request.getPath().substring(PREFIX.length());
+        String lower = relative.toLowerCase();
+        String format;
+        String contentType;
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
+            format = "jpeg";
+            contentType = "image/jpeg";
+        } else if (lower.endsWith(".png")) {
+            format = "png";
+            contentType = "image/png";
+        } else {
+            return buildText(HttpStatus.NOT_FOUND, "404 Not Found");
+        }
+        Path source = webRoot.resolve(relative).normalize();
+        if (relative.contains("..") || !source.startsWith(webRoot)) {
+            return buildText(HttpStatus.NOT_FOUND, "404 Not Found");
+        }
+        FileMetaCache.FileMeta meta = metaCache.stat(source);
+        if (!meta.isFile()) {
+            return buildText(HttpStatus.NOT_FOUND, "404 Not Found");
+        }
+
+        int width = 0;
+        String w = request.getQueryParam("w");
+        if (w != null) {
+            try {
+                width = Integer.parseInt(w.trim());
+            } catch (NumberFormatException e) {
+                width = -1;
+            }
+            if (Arrays.binarySearch(ALLOWED_WIDTHS, width) < 0) {
+                return buildText(HttpStatus.BAD_REQUEST, "400 Bad Request - w must be one of "
+                        + Arrays.toString(ALLOWED_WIDTHS));
+            }
+        }
+
+        // 变体由源文件修改时间和宽度唯一确定
+        String etag = "\"" + Long.toHexString(meta.getLastModified()) + "-" + Long.toHexString(meta.getLength())
+                + "-w" + width + "\"";
+        String cacheControl = cachePolicy.directiveFor(relative, contentType);
+        if (etag.equals(request.getHeaders().get("If-None-Match"))) {
+            HttpResponse resp = newResponse(HttpStatus.NOT_MODIFIED, etag, cacheControl);
+            resp.addHeader("Content-Length", "0");
+            return resp;
+        }
+
+        try {
+            byte[] content = width == 0 ? null
+                    : variants.get(source, relative, meta.getLastModified(), width, format);
+            if (content == null) {
+                // 未指定宽度或原图已经足够小：直接发送原图
+                content = StaticContentCache.getInstance().read(source, meta.getLastModified(), meta.getLength());
+            }
+            HttpResponse resp = newResponse(HttpStatus.OK, etag, cacheControl);
+            resp.addHeader("Content-Type", contentType);
+            resp.addHeader("Content-Length", String.valueOf(content.length));
+            if (!"HEAD".equalsIgnoreCase(method)) {
+                resp.setBody(content);
+            }
+            return resp;
+        } catch (ImageVariantCache.BusyException e) {
+            HttpResponse resp = buildText(HttpStatus.SERVICE_UNAVAILABLE, "503 Service Unavailable");
+            resp.addHeader("Retry-After", "1");
+            return resp;
+        } catch (IOException e) {
+            return buildText(HttpStatus.INTERNAL_SERVER_ERROR, "500 Internal Server Error");
+        }
+    }
+
+    private HttpResponse newResponse(int statusCode, String etag, String cacheControl) {
+        HttpResponse resp = new HttpResponse();
+        resp.setVersion("HTTP/1.1");
+        resp.setStatusCode(statusCode);
+        resp.setReasonPhrase(HttpStatus.getReasonPhrase(statusCode));
+        resp.addHeader("ETag", etag);
+        if (cacheControl != null) {
+            resp.addHeader("Cache-Control", cacheControl);
+        }
+        return resp;
+    }
+
+    private HttpResponse buildText(int statusCode, String text) {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        HttpResponse resp = new HttpResponse();
+        resp.setVersion("HTTP/1.1");
+        resp.setStatusCode(statusCode);
+        resp.setReasonPhrase(HttpStatus.getReasonPhrase(statusCode));
+        resp.addHeader("Content-Type", "text/plain; charset=utf-8");
+        resp.addHeader("Content-Length", String.valueOf(body.length));
+        resp.setBody(body);
+        return resp;
+    }
+}
@@ -3,9 +3,16 @@ package com.http.server.handler;
 import com.http.common.HttpRequest;
 import com.http.common.HttpResponse;
 import com.http.common.HttpStatus;
+import com.http.server.auth.AuthBusyException;
+import com.http.server.auth.SessionStore;
 import com.http.server.auth.UserManager;
+import com.http.server.throttle.LoginRateLimiter;
+import com.http.utils.JsonFieldReader;
 
 public class LoginHandler {
+    // 请求体中要提取的字段，解析器只构造一次
+    private static final JsonFieldReader CREDENTIALS = new JsonFieldReader("username", "password");
+
     //处理 login 的 POST 请求
     //调用 UserManager 进行验证，返回登录结果的 HttpResponse
     //若验证成功返回 200，否则返回 401 或 403
@@ -20,10 +27,10 @@ public class LoginHandler {
             return response;
         }
 
-        // 解析JSON请求体
-        String body = request.getBody() == null ? "" : new String(request.getBody(), java.nio.charset.StandardCharsets.UTF_8);
-        String username = extractJsonField(body, "username");
-        String password = extractJsonField(body, "password");
+        // 解析JSON请求体：直接在字节上提取 username / password
+        String[] fields = CREDENTIALS.read(request.getBody());
+        String username = fields[0];
+        String password = fields[1];
 
         if (username == null || password == null) {
             response.setStatusCode(400); // BAD_REQUEST
@@ -32,30 +39,50 @@ public class LoginHandler {
             return response;
         }
 
-        if (UserManager.getInstance("src/main/java/com/http/server/auth/users.json").login(username, password)) {
+        // 同一用户名最近失败过多：不再做密码校验
+        LoginRateLimiter limiter = LoginRateLimiter.getInstance();
+        HttpResponse limited = limiter.checkUsername(username);
+        if (limited != null) {
+            return limited;
+        }
+
+        boolean authenticated;
+        try {
+            authenticated = UserManager.getInstance("src/main/java/com/http/server/auth/users.json").login(username, password);
+        } catch (AuthBusyException e) {
+            // 哈希线程池繁忙：让客户端稍后重试，而不是占着连接线程排队
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.setReasonPhrase(HttpStatus.getReasonPhrase(HttpStatus.SERVICE_UNAVAILABLE));
+            response.setBody("Server busy, please retry.");
+            response.addHeader("Retry-After", "1");
+            response.addHeader("Content-Type", "text/plain; charset=UTF-8");
+            response.addHeader("Content-Length", String.valueOf(response.getBody().length));
+            return response;
+        }
+
+        if (authenticated) {
+            // 签发会话令牌：浏览器走 Cookie，其他客户端可从 JSON 中取出后用 Authorization: Bearer 携带
+            SessionStore sessions = SessionStore.getInstance();
+            SessionStore.Session session = sessions.create(username);
             response.setStatusCode(HttpStatus.OK);
             response.setReasonPhrase(HttpStatus.getReasonPhrase(HttpStatus.OK));
-            response.setBody("Login successful!");
+            response.setBody("{\"status\":\"ok\",\"message\":\"Login successful!\",\"token\":\"" + session.getToken()
+                    + "\",\"expiresIn\":" + sessions.getTtlSeconds() + "}");
+            response.addHeader("Set-Cookie", sessions.cookieFor(session));
+            response.addHeader("Cache-Control", "no-store");
+            response.addHeader("Content-Type", "application/json; charset=UTF-8");
         } else {
+            limiter.recordFailure(username);
             response.setStatusCode(HttpStatus.NOT_FOUND);
             response.setReasonPhrase(HttpStatus.getReasonPhrase(HttpStatus.NOT_FOUND));
             response.setBody("Invalid credentials.");
+            response.addHeader("Content-Type", "text/plain; charset=UTF-8");
         }
 
         // 设置响应头
-        response.addHeader("Content-Type", "text/plain; charset=UTF-8");
         response.addHeader("Content-Length", String.valueOf(response.getBody().length));
         response.addHeader("Connection", "close");
 
         return response;
     }
-
-    /**
-     * 简单的JSON字段提取方法
-     */
-    private String extractJsonField(String json, String key) {
-        java.util.regex.Pattern p = java.util.regex.Pattern.compile("\"" + java.util.regex.Pattern.quote(key) + "\"\\s*:\\s*\"(.*?)\"");
-        java.util.regex.Matcher m = p.matcher(json);
-        return m.find() ? m.group(1) : null;
-    }
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package com.http.server.handler;
+
+import com.http.common.HttpRequest;
+import com.http.common.HttpResponse;
+import com.http.common.HttpStatus;
+import com.http.server.metrics.MetricsRegistry;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 指标接口：GET /metrics 返回 Prometheus 文本格式
+ */
+public class MetricsHandler {
+
+    public static final String PATH = "/metrics";
+
+    private final MetricsRegistry registry = MetricsRegistry.getInstance();
+
+    public HttpResponse handle(HttpRequest request) {
+        HttpResponse resp = new HttpResponse();
+        resp.setVersion("HTTP/1.1");
+        if (!"GET".equalsIgnoreCase(request.getMethod())) {
+            resp.setStatusCode(HttpStatus.METHOD_NOT_ALLOWED);
+            resp.setReasonPhrase(HttpStatus.getReasonPhrase(HttpStatus.METHOD_NOT_ALLOWED));
+            resp.addHeader("Allow", "GET");
+            resp.addHeader("Content-Length", "0");
+            resp.setBody(new byte[0]);
+            return resp;
+        }
+        byte[] body = registry.toPrometheus().getBytes(StandardCharsets.UTF_8);
+        resp.setStatusCode(HttpStatus.OK);
+        resp.setReasonPhrase(HttpStatus.getReasonPhrase(HttpStatus.OK));
+        resp.addHeader("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        resp.addHeader("Content-Length", String.valueOf(body.length));
+        resp.addHeader("Cache-Control", "no-store");
+        resp.setBody(body);
+        return resp;
+    }
+}
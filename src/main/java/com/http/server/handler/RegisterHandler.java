@@ -3,13 +3,15 @@ package com.http.server.handler;
 import com.http.common.HttpRequest;
 import com.http.common.HttpResponse;
 import com.http.common.HttpStatus;
+import com.http.server.auth.AuthBusyException;
 import com.http.server.auth.UserManager;
 
+import com.http.utils.JsonFieldReader;
+
 import java.nio.charset.StandardCharsets;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 public class RegisterHandler {
+    private static final JsonFieldReader CREDENTIALS = new JsonFieldReader("username", "password");
     private final UserManager userManager = UserManager.getInstance("src/main/java/com/http/server/auth/users.json");
 
     /**
@@ -20,15 +22,24 @@ public class RegisterHandler {
             return buildMethodNotAllowed();
         }
 
-        String body = request.getBody() == null ? "" : new String(request.getBody(), StandardCharsets.UTF_8);
-        String username = extractJsonField(body, "username");
-        String password = extractJsonField(body, "password");
+        String[] fields = CREDENTIALS.read(request.getBody());
+        String username = fields[0];
+        String password = fields[1];
 
         if (username == null || password == null) {
             return buildBadRequest("缺少 username 或 password 字段");
         }
 
-        boolean ok = userManager.register(username, password);
+        boolean ok;
+        try {
+            ok = userManager.register(username, password);
+        } catch (AuthBusyException e) {
+            HttpResponse resp = buildJsonResponse(HttpStatus.SERVICE_UNAVAILABLE,
+                    HttpStatus.getReasonPhrase(HttpStatus.SERVICE_UNAVAILABLE),
+                    "{\"status\":\"error\",\"message\":\"server busy\"}");
+            resp.addHeader("Retry-After", "1");
+            return resp;
+        }
         if (ok) {
             String respBody = "{\"status\":\"ok\",\"message\":\"registered\"}";
             return buildJsonResponse(HttpStatus.OK, HttpStatus.getReasonPhrase(HttpStatus.OK), respBody);
@@ -39,12 +50,6 @@ public class RegisterHandler {
         }
     }
 
-    private String extractJsonField(String json, String key) {
-        Pattern p = Pattern.compile("\"" + Pattern.quote(key) + "\"\\s*:\\s*\"(.*?)\"");
-        Matcher m = p.matcher(json);
-        return m.find() ? m.group(1) : null;
-    }
-
     private HttpResponse buildJsonResponse(int statusCode, String reason, String bodyStr) {
         byte[] body = bodyStr.getBytes(StandardCharsets.UTF_8);
         HttpResponse resp = new HttpResponse();
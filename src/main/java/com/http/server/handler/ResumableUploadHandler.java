@@ -0,0 +1,173 @@
+package com.http.server.handler;
+
+import com.http.common.HttpRequest;
+import com.http.common.HttpResponse;
+import com.http.common.HttpStatus;
+import com.http.server.upload.ResumableUploadManager;
+import com.http.server.upload.UploadPersister;
+import com.http.server.upload.UploadStore;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+/**
+ * 断点续传上传接口：
+ *   POST   /api/uploads                 创建会话（可选 Upload-Length 头声明总长度），返回 201 + Location
+ *   HEAD   /api/uploads/{id}            查询已提交的偏移量（Upload-Offset 头）
+ *   PATCH  /api/uploads/{id}            携带 Upload-Offset 头追加一个分片
+ *   POST   /api/uploads/{id}/complete   完成上传，数据导入上传存储
+ *   DELETE /api/uploads/{id}            放弃上传
+ */
+public class ResumableUploadHandler {
+
+    public static final String PREFIX = "/api/uploads";
+
+    private final ResumableUploadManager manager;
+    private final UploadStore store;
+    private final UploadPersister persister;
+
+    public ResumableUploadHandler() {
+        this.manager = ResumableUploadManager.getInstance();
+        this.store = UploadStore.getInstance();
+        this.persister = UploadPersister.getInstance();
+    }
+
+    /**
+     * PATCH 分片的请求体需要流式写盘，由 Router 据此决定是否预读请求体
+     */
+    public static boolean isChunkRequest(HttpRequest request) {
+        String uri = request.getUri();
+        return "PATCH".equalsIgnoreCase(request.getMethod())
+                && uri != null && uri.startsWith(PREFIX + "/");
+    }
+
+    public HttpResponse handle(HttpRequest request) {
+        String method = request.getMethod();
+        String rest = request.getUri().substring(PREFIX.length());
+
+        try {
+            if (rest.isEmpty() || "/".equals(rest)) {
+                if (!"POST".equalsIgnoreCase(method)) {
+                    return buildJson(HttpStatus.METHOD_NOT_ALLOWED, FileUploadHandler.errorJson("Method Not Allowed"));
+                }
+                return handleCreate(request);
+            }
+
+            boolean completePath = rest.endsWith("/complete");
+            String id = completePath ? rest.substring(1, rest.length() - "/complete".length()) : rest.substring(1);
+            ResumableUploadManager.Session session = manager.get(id);
+            if (session == null) {
+                return buildJson(HttpStatus.NOT_FOUND, FileUploadHandler.errorJson("upload session not found"));
+            }
+
+            if (completePath) {
+                if (!"POST".equalsIgnoreCase(method)) {
+                    return buildJson(HttpStatus.METHOD_NOT_ALLOWED, FileUploadHandler.errorJson("Method Not Allowed"));
+                }
+                return handleComplete(session);
+            }
+            if ("HEAD".equalsIgnoreCase(method)) {
+                HttpResponse resp = buildOffsetResponse(HttpStatus.OK, session.getOffset());
+                if (session.getLength() >= 0) {
+                    resp.addHeader("Upload-Length", String.valueOf(session.getLength()));
+                }
+                return resp;
+            }
+            if ("PATCH".equalsIgnoreCase(method)) {
+                return handleChunk(request, session);
+            }
+            if ("DELETE".equalsIgnoreCase(method)) {
+                manager.abort(session);
+                return buildOffsetResponse(HttpStatus.NO_CONTENT, 0);
+            }
+            return buildJson(HttpStatus.METHOD_NOT_ALLOWED, FileUploadHandler.errorJson("Method Not Allowed"));
+        } catch (ResumableUploadManager.OffsetConflictException e) {
+            HttpResponse resp = buildJson(HttpStatus.CONFLICT,
+                    new JSONObject().put("status", "error").put("message", String.valueOf(e.getMessage()))
+                            .put("offset", e.getCurrentOffset()).toString());
+            resp.addHeader("Upload-Offset", String.valueOf(e.getCurrentOffset()));
+            return resp;
+        } catch (UploadPersister.DurabilityTimeoutException e) {
+            return FileUploadHandler.buildUnavailable("Upload not yet durable: " + e.getMessage());
+        } catch (ResumableUploadManager.LengthExceededException e) {
+            return buildJson(HttpStatus.PAYLOAD_TOO_LARGE, FileUploadHandler.errorJson(e.getMessage()));
+        } catch (IOException e) {
+            return buildJson(HttpStatus.INTERNAL_SERVER_ERROR,
+                    FileUploadHandler.errorJson("Upload failed: " + e.getMessage()));
+        }
+    }
+
+    private HttpResponse handleCreate(HttpRequest request) throws IOException {
+        long length = -1;
+        String declared = request.getHeaders().get("Upload-Length");
+        if (declared != null) {
+            try {
+                length = Long.parseLong(declared.trim());
+            } catch (NumberFormatException e) {
+                length = -2;
+            }
+            if (length < 0) {
+                return buildJson(HttpStatus.BAD_REQUEST, FileUploadHandler.errorJson("invalid Upload-Length"));
+            }
+        }
+        ResumableUploadManager.Session session = manager.create(length);
+        String location = PREFIX + "/" + session.getId();
+        HttpResponse resp = buildJson(HttpStatus.CREATED,
+                new JSONObject().put("status", "ok").put("id", session.getId()).put("location", location).toString());
+        resp.addHeader("Location", location);
+        resp.addHeader("Upload-Offset", "0");
+        return resp;
+    }
+
+    private HttpResponse handleChunk(HttpRequest request, ResumableUploadManager.Session session) throws IOException {
+        String offsetHeader = request.getHeaders().get("Upload-Offset");
+        long offset;
+        try {
+            offset = Long.parseLong(offsetHeader == null ? "" : offsetHeader.trim());
+        } catch (NumberFormatException e) {
+            return buildJson(HttpStatus.BAD_REQUEST, FileUploadHandler.errorJson("missing or invalid Upload-Offset"));
+        }
+        long committed = manager.append(session, offset, request.getBodyStream());
+        return buildOffsetResponse(HttpStatus.NO_CONTENT, committed);
+    }
+
+    private HttpResponse handleComplete(ResumableUploadManager.Session session) throws IOException {
+        // 完成的数据导入按内容寻址的上传存储（相同内容只保存一份）；在会话删除之前落盘，
+        // 未能落盘时撤销登记并保留会话，客户端重试完成请求即可
+        UploadStore.Entry entry = manager.complete(session, data -> {
+            UploadStore.Entry imported = store.importFile(data,
+                    FileUploadHandler.determineStoredExtension(data.toFile(), null, null));
+            FileUploadHandler.persistOrRelease(store, persister, Collections.singletonList(imported));
+            return imported;
+        });
+        return buildJson(HttpStatus.OK, FileUploadHandler.toJson(entry).put("status", "success")
+                .put("message", "File uploaded successfully").toString());
+    }
+
+    private HttpResponse buildOffsetResponse(int statusCode, long offset) {
+        HttpResponse resp = new HttpResponse();
+        resp.setVersion("HTTP/1.1");
+        resp.setStatusCode(statusCode);
+        resp.setReasonPhrase(HttpStatus.getReasonPhrase(statusCode));
+        resp.addHeader("Upload-Offset", String.valueOf(offset));
+        resp.addHeader("Cache-Control", "no-store");
+        resp.addHeader("Content-Length", "0");
+        return resp;
+    }
+
+    private HttpResponse buildJson(int statusCode, String bodyStr) {
+        byte[] body = bodyStr.getBytes(StandardCharsets.UTF_8);
+        HttpResponse resp = new HttpResponse();
+        resp.setVersion("HTTP/1.1");
+        resp.setStatusCode(statusCode);
+        resp.setReasonPhrase(HttpStatus.getReasonPhrase(statusCode));
+        resp.addHeader("Content-Type", "application/json; charset=utf-8");
+        resp.addHeader("Content-Length", String.valueOf(body.length));
+        resp.addHeader("Cache-Control", "no-store");
+        resp.setBody(body);
+        return resp;
+    }
+}
@@ -0,0 +1,62 @@
+package com.http.server.handler;
+
+import com.http.common.HttpRequest;
+import com.http.common.HttpResponse;
+import com.http.common.HttpStatus;
+import com.http.server.auth.SessionStore;
+
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 会话接口：
+ *   GET    /api/session   校验当前令牌（Cookie 或 Bearer），返回用户名，无效时 401
+ *   DELETE /api/session   注销当前令牌
+ */
+public class SessionHandler {
+
+    public static final String PATH = "/api/session";
+
+    private final SessionStore sessions = SessionStore.getInstance();
+
+    public HttpResponse handle(HttpRequest request) {
+        String method = request.getMethod();
+        if ("DELETE".equalsIgnoreCase(method)) {
+            boolean removed = sessions.invalidate(SessionStore.extractToken(request));
+            HttpResponse resp = buildJson(HttpStatus.OK, "{\"status\":\"ok\",\"loggedOut\":" + removed + "}");
+            // 让浏览器同时删除 Cookie
+            resp.addHeader("Set-Cookie", SessionStore.COOKIE_NAME + "=; Path=/; Max-Age=0; HttpOnly; SameSite=Lax");
+            return resp;
+        }
+        if (!"GET".equalsIgnoreCase(method)) {
+            return buildJson(HttpStatus.METHOD_NOT_ALLOWED, "{\"status\":\"error\",\"message\":\"Method Not Allowed\"}");
+        }
+
+        SessionStore.Session session = sessions.get(request);
+        if (session == null) {
+            HttpResponse resp = buildJson(HttpStatus.UNAUTHORIZED, "{\"status\":\"error\",\"message\":\"not logged in\"}");
+            resp.addHeader("WWW-Authenticate", "Bearer");
+            return resp;
+        }
+        long expiresIn = Math.max(0, (session.getExpiresAt() - System.currentTimeMillis()) / 1000);
+        JSONObject body = new JSONObject();
+        body.put("status", "ok");
+        body.put("username", session.getUsername());
+        body.put("expiresIn", expiresIn);
+        return buildJson(HttpStatus.OK, body.toString());
+    }
+
+    private HttpResponse buildJson(int statusCode, String bodyStr) {
+        byte[] body = bodyStr.getBytes(StandardCharsets.UTF_8);
+        HttpResponse resp = new HttpResponse();
+        resp.setVersion("HTTP/1.1");
+        resp.setStatusCode(statusCode);
+        resp.setReasonPhrase(HttpStatus.getReasonPhrase(statusCode));
+        resp.addHeader("Content-Type", "application/json; charset=utf-8");
+        resp.addHeader("Content-Length", String.valueOf(body.length));
+        resp.addHeader("Cache-Control", "no-store");
+        resp.setBody(body);
+        return resp;
+    }
+}
@@ -4,10 +4,13 @@ import com.http.common.HttpRequest;
 import com.http.common.HttpResponse;
 import com.http.common.HttpStatus;
 import com.http.common.MimeType;
+import com.http.server.cache.CachePolicy;
+import com.http.server.cache.FileMetaCache;
+import com.http.server.cache.PackedWebRoot;
+import com.http.server.cache.StaticContentCache;
+import com.http.server.cache.WebPack;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
@@ -15,18 +18,35 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
 public class StaticFileHandler {
+    // 默认静态文件根目录：src/main/java/web
+    public static final Path DEFAULT_WEB_ROOT = Paths.get("src", "main", "java", "web");
+
     // 静态文件根目录（相对于项目根目录）
     private final Path webRoot;
+    // 缓存策略：决定 Cache-Control / Expires
+    private final CachePolicy cachePolicy;
+    // 文件元数据缓存（含不存在的负结果），所有连接共享
+    private final FileMetaCache metaCache = FileMetaCache.getInstance();
+    // 文件内容缓存，所有连接共享
+    private final StaticContentCache contentCache = StaticContentCache.getInstance();
+    // 打包数据源（单文件 Web 根目录），未启用时为 null，走普通文件系统
+    private final PackedWebRoot packedRoot = PackedWebRoot.getInstalled();
+
+    // 预压缩变体：{Content-Encoding, 文件后缀}，按优先级排列
+    private static final String[][] PRECOMPRESSED_VARIANTS = {{"br", ".br"}, {"gzip", ".gz"}};
+
+    // 本 webRoot 的 404 页面（内容与修改时间一起发布），仅在文件修改时间变化后重新读取
+    private volatile NotFoundPage notFoundPage;
 
     public StaticFileHandler() {
         // 默认指向 src/main/java/web 目录
-        this(Paths.get("src", "main", "java", "web"));
+        this(DEFAULT_WEB_ROOT);
     }
 
     /**
-     * 构造 304 Not Modified 响应
+     * 构造 304 Not Modified 响应（Vary 与 Cache-Control 与 200 一致，共享缓存才不会混淆压缩与未压缩的副本）
      */
-    private HttpResponse buildNotModified(String lastModified) {
+    private HttpResponse buildNotModified(String lastModified, boolean compressible, String cacheControl) {
         HttpResponse resp = new HttpResponse();
         resp.setVersion("HTTP/1.1");
         resp.setStatusCode(HttpStatus.NOT_MODIFIED);
@@ -34,11 +54,32 @@ public class StaticFileHandler {
         resp.addHeader("Connection", "close");
         resp.addHeader("Last-Modified", lastModified);
         resp.addHeader("Content-Length", "0");
+        if (compressible) {
+            resp.addHeader("Vary", "Accept-Encoding");
+        }
+        addCacheHeaders(resp, cacheControl);
         return resp;
     }
 
     public StaticFileHandler(Path webRoot) {
+        this(webRoot, CachePolicy.getDefault());
+    }
+
+    public StaticFileHandler(Path webRoot, CachePolicy cachePolicy) {
         this.webRoot = webRoot.toAbsolutePath().normalize();
+        this.cachePolicy = cachePolicy;
+    }
+
+    /**
+     * 添加 Cache-Control 与 Expires 头（304 也需要携带，以刷新浏览器缓存的有效期）
+     */
+    private void addCacheHeaders(HttpResponse resp, String cacheControl) {
+        if (cacheControl == null) return;
+        resp.addHeader("Cache-Control", cacheControl);
+        String expires = CachePolicy.expiresFor(cacheControl, System.currentTimeMillis());
+        if (expires != null) {
+            resp.addHeader("Expires", expires);
+        }
     }
 
     /**
@@ -66,84 +107,155 @@ public class StaticFileHandler {
             return buildNotFound();
         }
 
+        if (packedRoot != null) {
+            return handlePacked(request, method, safePath, packedRoot.current());
+        }
+
         Path target = webRoot.resolve(safePath).normalize();
         // 确保请求路径仍在 webRoot 下
         if (!target.startsWith(webRoot)) {
             return buildNotFound();
         }
 
-        File file = target.toFile();
-        if (!file.exists() || !file.isFile()) {
+        FileMetaCache.FileMeta meta = metaCache.stat(target);
+        if (!meta.isFile()) {
             return buildNotFound();
         }
 
         try {
             // === 304 Not Modified 处理：基于 Last-Modified / If-Modified-Since ===
-            long lastModifiedMillis = file.lastModified();
+            long lastModifiedMillis = meta.getLastModified();
             String lastModified = DateTimeFormatter.RFC_1123_DATE_TIME
                     .withZone(ZoneId.of("GMT"))
                     .format(Instant.ofEpochMilli(lastModifiedMillis));
+            String contentType = MimeType.getMimeType(target.getFileName().toString());
+            String cacheControl = cachePolicy.directiveFor(safePath, contentType);
+            boolean compressible = MimeType.isCompressible(contentType);
+
+            if (isNotModified(request, lastModifiedMillis)) {
+                // 客户端缓存仍然有效，返回 304
+                return buildNotModified(lastModified, compressible, cacheControl);
+            }
 
-            String ifModifiedSince = request.getHeaders().get("If-Modified-Since");
-            if (ifModifiedSince != null) {
-                try {
-                    // 解析 RFC 1123 日期并按秒比较（避免毫秒级差异导致误判）
-                    Instant ifModInstant = DateTimeFormatter.RFC_1123_DATE_TIME
-                            .withZone(ZoneId.of("GMT"))
-                            .parse(ifModifiedSince, java.time.ZonedDateTime::from)
-                            .toInstant();
-
-                    long ifModSeconds = ifModInstant.getEpochSecond();
-                    long lastModSeconds = lastModifiedMillis / 1000;
-
-                    if (ifModSeconds >= lastModSeconds) {
-                        // 客户端缓存仍然有效，返回 304
-                        return buildNotModified(lastModified);
+            // 可压缩的文本资源：优先发送预压缩的 .br / .gz 兄弟文件
+            String contentEncoding = null;
+            Path bodyPath = target;
+            FileMetaCache.FileMeta bodyMeta = meta;
+            if (compressible) {
+                String acceptEncoding = request.getHeaders().get("Accept-Encoding");
+                for (String[] variant : PRECOMPRESSED_VARIANTS) {
+                    if (!acceptsEncoding(acceptEncoding, variant[0])) continue;
+                    Path sibling = target.resolveSibling(target.getFileName() + variant[1]);
+                    FileMetaCache.FileMeta siblingMeta = metaCache.stat(sibling);
+                    // 兄弟文件比原文件旧说明已过期，不再使用
+                    if (siblingMeta.isFile() && siblingMeta.getLastModified() >= lastModifiedMillis) {
+                        contentEncoding = variant[0];
+                        bodyPath = sibling;
+                        bodyMeta = siblingMeta;
+                        break;
                     }
-                } catch (Exception ignored) {
-                    // 无法解析 If-Modified-Since，按正常 200 流程返回
                 }
             }
 
-            byte[] content = Files.readAllBytes(target);
-            String contentType = MimeType.getMimeType(file.getName());
+            byte[] content = contentCache.read(bodyPath, bodyMeta.getLastModified(), bodyMeta.getLength());
+            return buildOk(method, content, contentType, lastModified, contentEncoding, compressible, cacheControl);
+        } catch (IOException e) {
+            return buildInternalError();
+        }
+    }
 
-            HttpResponse resp = new HttpResponse();
-            resp.setVersion("HTTP/1.1");
-            resp.setStatusCode(HttpStatus.OK);
-            resp.setReasonPhrase(HttpStatus.getReasonPhrase(HttpStatus.OK));
-            resp.addHeader("Content-Type", contentType);
-            resp.addHeader("Content-Length", String.valueOf(content.length));
-            resp.addHeader("Connection", "close");
-            resp.addHeader("Last-Modified", lastModified);
+    /**
+     * 从打包文件提供静态资源：查找、304 判断、预压缩选择都只访问内存索引
+     */
+    private HttpResponse handlePacked(HttpRequest request, String method, String safePath, WebPack pack) {
+        WebPack.Entry entry = pack.lookup(safePath);
+        if (entry == null) {
+            return buildNotFound();
+        }
+        if (isNotModified(request, entry.getLastModified())) {
+            return buildNotModified(entry.getLastModifiedHeader(), entry.isCompressible(), entry.getCacheControl());
+        }
 
-            if (!"HEAD".equalsIgnoreCase(method)) {
-                resp.setBody(content);
+        String contentEncoding = null;
+        WebPack.Entry body = entry;
+        if (entry.isCompressible()) {
+            String acceptEncoding = request.getHeaders().get("Accept-Encoding");
+            for (String[] variant : PRECOMPRESSED_VARIANTS) {
+                if (!acceptsEncoding(acceptEncoding, variant[0])) continue;
+                WebPack.Entry sibling = pack.lookup(safePath + variant[1]);
+                if (sibling != null && sibling.getLastModified() >= entry.getLastModified()) {
+                    contentEncoding = variant[0];
+                    body = sibling;
+                    break;
+                }
             }
-            return resp;
-        } catch (IOException e) {
-            return buildInternalError();
         }
+
+        return buildOk(method, pack.read(body), entry.getContentType(), entry.getLastModifiedHeader(),
+                contentEncoding, entry.isCompressible(), entry.getCacheControl());
+    }
+
+    /**
+     * 基于 If-Modified-Since 判断客户端缓存是否仍然有效
+     */
+    private boolean isNotModified(HttpRequest request, long lastModifiedMillis) {
+        String ifModifiedSince = request.getHeaders().get("If-Modified-Since");
+        if (ifModifiedSince == null) {
+            return false;
+        }
+        try {
+            // 解析 RFC 1123 日期并按秒比较（避免毫秒级差异导致误判）
+            Instant ifModInstant = DateTimeFormatter.RFC_1123_DATE_TIME
+                    .withZone(ZoneId.of("GMT"))
+                    .parse(ifModifiedSince, java.time.ZonedDateTime::from)
+                    .toInstant();
+
+            long ifModSeconds = ifModInstant.getEpochSecond();
+            long lastModSeconds = lastModifiedMillis / 1000;
+            return ifModSeconds >= lastModSeconds;
+        } catch (Exception ignored) {
+            // 无法解析 If-Modified-Since，按正常 200 流程返回
+            return false;
+        }
+    }
+
+    private HttpResponse buildOk(String method, byte[] content, String contentType, String lastModified,
+                                 String contentEncoding, boolean compressible, String cacheControl) {
+        HttpResponse resp = new HttpResponse();
+        resp.setVersion("HTTP/1.1");
+        resp.setStatusCode(HttpStatus.OK);
+        resp.setReasonPhrase(HttpStatus.getReasonPhrase(HttpStatus.OK));
+        resp.addHeader("Content-Type", contentType);
+        resp.addHeader("Content-Length", String.valueOf(content.length));
+        resp.addHeader("Connection", "close");
+        resp.addHeader("Last-Modified", lastModified);
+        if (contentEncoding != null) {
+            resp.addHeader("Content-Encoding", contentEncoding);
+        }
+        if (compressible) {
+            resp.addHeader("Vary", "Accept-Encoding");
+        }
+        addCacheHeaders(resp, cacheControl);
+
+        if (!"HEAD".equalsIgnoreCase(method)) {
+            resp.setBody(content);
+        }
+        return resp;
     }
 
     private HttpResponse buildNotFound() {
-        Path notFoundPage = webRoot.resolve("404.html");
         HttpResponse resp = new HttpResponse();
         resp.setVersion("HTTP/1.1");
         resp.setStatusCode(HttpStatus.NOT_FOUND);
         resp.setReasonPhrase(HttpStatus.getReasonPhrase(HttpStatus.NOT_FOUND));
         resp.addHeader("Connection", "close");
 
-        if (Files.exists(notFoundPage)) {
-            try {
-                byte[] body = Files.readAllBytes(notFoundPage);
-                resp.addHeader("Content-Type", "text/html");
-                resp.addHeader("Content-Length", String.valueOf(body.length));
-                resp.setBody(body);
-                return resp;
-            } catch (IOException ignored) {
-                // fall through to plain text body
-            }
+        byte[] page = loadNotFoundPage();
+        if (page != null) {
+            resp.addHeader("Content-Type", "text/html");
+            resp.addHeader("Content-Length", String.valueOf(page.length));
+            resp.setBody(page);
+            return resp;
         }
 
         byte[] body = "404 Not Found".getBytes();
@@ -153,6 +265,76 @@ public class StaticFileHandler {
         return resp;
     }
 
+    /**
+     * 判断 Accept-Encoding 是否接受指定编码（q=0 表示明确拒绝）
+     */
+    static boolean acceptsEncoding(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) return false;
+        Boolean wildcard = null;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String name = tokens[0].trim();
+            boolean exact = name.equalsIgnoreCase(encoding);
+            if (!exact && !"*".equals(name)) continue;
+            boolean accepted = true;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        accepted = Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        accepted = false;
+                    }
+                }
+            }
+            // 明确列出的编码优先于通配符
+            if (exact) return accepted;
+            wildcard = accepted;
+        }
+        return wildcard != null && wildcard;
+    }
+
+    /**
+     * 读取 404 页面，命中内存副本时不访问磁盘内容
+     */
+    private byte[] loadNotFoundPage() {
+        if (packedRoot != null) {
+            WebPack pack = packedRoot.current();
+            WebPack.Entry entry = pack.lookup("404.html");
+            return entry != null ? pack.read(entry) : null;
+        }
+        Path notFoundPage = webRoot.resolve("404.html");
+        FileMetaCache.FileMeta meta = metaCache.stat(notFoundPage);
+        if (!meta.isFile()) {
+            return null;
+        }
+        NotFoundPage cached = this.notFoundPage;
+        if (cached != null && cached.lastModified == meta.getLastModified()) {
+            return cached.body;
+        }
+        try {
+            // 经由共享的内容缓存读取，其他连接的处理器已读过时不再访问磁盘
+            byte[] body = contentCache.read(notFoundPage, meta.getLastModified(), meta.getLength());
+            this.notFoundPage = new NotFoundPage(body, meta.getLastModified());
+            return body;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 404 页面内容及其修改时间，作为一个整体发布，读者不会拿到新内容配旧时间
+     */
+    private static final class NotFoundPage {
+        final byte[] body;
+        final long lastModified;
+
+        NotFoundPage(byte[] body, long lastModified) {
+            this.body = body;
+            this.lastModified = lastModified;
+        }
+    }
+
     private HttpResponse buildMethodNotAllowed() {
         byte[] body = "405 Method Not Allowed".getBytes();
         HttpResponse resp = new HttpResponse();
@@ -0,0 +1,106 @@
+package com.http.server.handler;
+
+import com.http.common.HttpRequest;
+import com.http.common.HttpResponse;
+import com.http.common.HttpStatus;
+import com.http.common.MimeType;
+import com.http.server.upload.UploadStore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * 访问上传存储中的文件：
+ *   GET/HEAD /api/files/{id}[.ext]   下载（内容按摘要寻址，可永久缓存）
+ *   DELETE   /api/files/{id}[.ext]   释放该上传，内容无其他引用时删除；
+ *                                    需携带上传时返回的删除令牌（Upload-Delete-Token 头）
+ */
+public class StoredFileHandler {
+
+    public static final String PREFIX = "/api/files/";
+    public static final String DELETE_TOKEN_HEADER = "Upload-Delete-Token";
+
+    private final UploadStore store;
+
+    public StoredFileHandler() {
+        this.store = UploadStore.getInstance();
+    }
+
+    public HttpResponse handle(HttpRequest request) {
+        String method = request.getMethod();
+        String name = request.getUri().substring(PREFIX.length());
+        int dot = name.indexOf('.');
+        String id = dot >= 0 ? name.substring(0, dot) : name;
+
+        UploadStore.Entry entry = store.get(id);
+        if (entry == null) {
+            return buildText(HttpStatus.NOT_FOUND, "404 Not Found");
+        }
+
+        try {
+            if ("DELETE".equalsIgnoreCase(method)) {
+                if (!entry.matchesDeleteToken(request.getHeaders().get(DELETE_TOKEN_HEADER))) {
+                    return buildText(HttpStatus.FORBIDDEN, "403 Forbidden");
+                }
+                store.release(id);
+                return buildText(HttpStatus.OK, "deleted");
+            }
+            if (!"GET".equalsIgnoreCase(method) && !"HEAD".equalsIgnoreCase(method)) {
+                return buildText(HttpStatus.METHOD_NOT_ALLOWED, "405 Method Not Allowed");
+            }
+
+            // 内容由摘要唯一确定，ETag 直接使用摘要
+            String etag = "\"" + entry.getDigest() + "\"";
+            HttpResponse resp = new HttpResponse();
+            resp.setVersion("HTTP/1.1");
+            resp.addHeader("ETag", etag);
+            resp.addHeader("Cache-Control", "public, max-age=31536000, immutable");
+            if (etag.equals(request.getHeaders().get("If-None-Match"))) {
+                resp.setStatusCode(HttpStatus.NOT_MODIFIED);
+                resp.setReasonPhrase(HttpStatus.getReasonPhrase(HttpStatus.NOT_MODIFIED));
+                resp.addHeader("Content-Length", "0");
+                return resp;
+            }
+
+            resp.setStatusCode(HttpStatus.OK);
+            resp.setReasonPhrase(HttpStatus.getReasonPhrase(HttpStatus.OK));
+            resp.addHeader("Content-Type", MimeType.getMimeType(entry.getFilename()));
+            if ("HEAD".equalsIgnoreCase(method)) {
+                resp.addHeader("Content-Length", String.valueOf(Files.size(store.blobPath(entry))));
+            } else {
+                // 上传可能很大：打开后交给连接线程分块写出，不读入内存；
+                // 文件已打开，之后即使被释放删除，这次下载仍能读完
+                Path blob = store.blobPath(entry);
+                InputStream in = Files.newInputStream(blob);
+                try {
+                    resp.setBodyStream(in, Files.size(blob));
+                } catch (IOException e) {
+                    in.close();
+                    throw e;
+                }
+            }
+            return resp;
+        } catch (NoSuchFileException e) {
+            // 查到记录之后、打开文件之前被并发释放
+            return buildText(HttpStatus.NOT_FOUND, "404 Not Found");
+        } catch (IOException e) {
+            return buildText(HttpStatus.INTERNAL_SERVER_ERROR, "500 Internal Server Error");
+        }
+    }
+
+    private HttpResponse buildText(int statusCode, String text) {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        HttpResponse resp = new HttpResponse();
+        resp.setVersion("HTTP/1.1");
+        resp.setStatusCode(statusCode);
+        resp.setReasonPhrase(HttpStatus.getReasonPhrase(statusCode));
+        resp.addHeader("Content-Type", "text/plain; charset=utf-8");
+        resp.addHeader("Content-Length", String.valueOf(body.length));
+        resp.setBody(body);
+        return resp;
+    }
+}
@@ -0,0 +1,370 @@
+package com.http.server.image;
+
+import com.http.server.jfr.ServerEvents;
+import com.http.utils.ConsoleWriter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 图片缩放变体缓存：内存（有容量上限）+ 磁盘两级。
+ * 变体以“源文件路径 + 修改时间 + 宽度”为键，源文件变化后自然失效。
+ * 磁盘文件名为 {路径+宽度+格式的摘要}-{源修改时间}.ext：同一变体只保留最新的一个文件，
+ * 未命中时发现旧修改时间的文件即删除；磁盘层另有字节上限，超出时按最近最少使用淘汰。
+ * 同一变体的并发首次请求只触发一次缩放（single-flight），缩放在独立的有界 CPU 线程池中执行，
+ * 线程池排满时立即拒绝而不是无限排队。
+ */
+public class ImageVariantCache {
+
+    private static final long DEFAULT_MAX_MEMORY_BYTES = 16L * 1024 * 1024;
+    private static final long DEFAULT_MAX_DISK_BYTES = 256L * 1024 * 1024;
+    private static final Pattern DISK_FILE = Pattern.compile("([0-9a-f]{32})-([0-9a-f]{1,16})\\.(jpg|png)");
+    private static final int QUEUE_CAPACITY = 64;
+    private static final long RESIZE_TIMEOUT_MILLIS = 10_000;
+
+    private static ImageVariantCache instance;
+
+    private final Path diskDir;
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+    // 磁盘层索引：变体基名 -> 当前文件，按访问顺序排列（LRU）；与 diskBytes 一起受 disk 的锁保护
+    private final LinkedHashMap<String, DiskEntry> disk = new LinkedHashMap<>(64, 0.75f, true);
+    private long diskBytes;
+    private final ConcurrentHashMap<String, byte[]> memory = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong memoryBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final ThreadPoolExecutor pool;
+
+    public ImageVariantCache(Path diskDir, long maxMemoryBytes, long maxDiskBytes, int threads) {
+        this.diskDir = diskDir;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxDiskBytes = maxDiskBytes;
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                    Thread t = new Thread(r, "image-resize-" + counter.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                });
+        try {
+            Files.createDirectories(diskDir);
+            loadDiskIndex();
+        } catch (IOException e) {
+            ConsoleWriter.logError("初始化图片变体缓存目录失败: " + e.getMessage());
+        }
+    }
+
+    public static synchronized ImageVariantCache getInstance() {
+        if (instance == null) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+            instance = new ImageVariantCache(Paths.get("cache", "img"), DEFAULT_MAX_MEMORY_BYTES,
+                    DEFAULT_MAX_DISK_BYTES, threads);
+        }
+        return instance;
+    }
+
+    /**
+     * 已创建的实例，尚未创建时返回 null（不触发创建，供管理端口的探测使用）
+     */
+    public static synchronized ImageVariantCache peekInstance() {
+        return instance;
+    }
+
+    /**
+     * 获取变体：依次查内存、磁盘，都没有时在线程池中缩放。
+     * 原图不比目标宽时返回 null（调用方直接发送原图）
+     * @param relativePath 源文件相对 Web 根目录的路径（用于生成键）
+     */
+    public byte[] get(Path source, String relativePath, long lastModified, int width, String format)
+            throws IOException, BusyException {
+        String key = relativePath + "|" + lastModified + "|" + width + "|" + format;
+        byte[] cached = memory.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            ServerEvents.get().cacheLookup("image", key, true, cached.length);
+            return cached.length == 0 ? null : cached;
+        }
+        misses.incrementAndGet();
+        ServerEvents.get().cacheLookup("image", key, false, 0);
+
+        CompletableFuture<byte[]> created = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = inFlight.putIfAbsent(key, created);
+        CompletableFuture<byte[]> future = existing != null ? existing : created;
+        if (existing == null) {
+            // 本线程负责生成；其他线程等待同一个 future
+            try {
+                pool.execute(() -> {
+                    try {
+                        created.complete(load(key, source, relativePath, lastModified, width, format));
+                    } catch (Throwable e) {
+                        created.completeExceptionally(e);
+                    } finally {
+                        inFlight.remove(key, created);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(key, created);
+                created.completeExceptionally(new BusyException("图片缩放队列已满"));
+            }
+        }
+
+        try {
+            byte[] result = future.get(RESIZE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            return result.length == 0 ? null : result;
+        } catch (TimeoutException e) {
+            throw new BusyException("图片缩放超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusyException("等待图片缩放时被中断");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof BusyException) throw (BusyException) cause;
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("图片缩放失败: " + cause, cause);
+        }
+    }
+
+    /**
+     * 在线程池中执行：先查磁盘，没有再缩放并写盘。空数组表示“不需要缩放”
+     */
+    private byte[] load(String key, Path source, String relativePath, long lastModified, int width, String format)
+            throws IOException {
+        String base = baseName(relativePath, width, format);
+        DiskEntry current;
+        DiskEntry stale = null;
+        synchronized (disk) {
+            current = disk.get(base);
+            if (current != null && current.lastModified != lastModified) {
+                // 源文件已修改：旧变体不会再被命中，直接删除
+                stale = removeDisk(base);
+                current = null;
+            }
+        }
+        if (stale != null) {
+            Files.deleteIfExists(diskDir.resolve(stale.fileName));
+        }
+
+        byte[] data = null;
+        if (current != null) {
+            try {
+                data = Files.readAllBytes(diskDir.resolve(current.fileName));
+            } catch (NoSuchFileException e) {
+                // 文件被外部删除：重新生成
+                synchronized (disk) {
+                    if (disk.get(base) == current) removeDisk(base);
+                }
+            }
+        }
+        if (data == null) {
+            data = ImageResizer.resize(source, width, format);
+            if (data == null) {
+                data = new byte[0];
+            }
+            String fileName = base + "-" + Long.toHexString(lastModified) + ("png".equals(format) ? ".png" : ".jpg");
+            // 先写临时文件再原子改名，并发进程不会读到半个文件
+            Path tmp = Files.createTempFile(diskDir, "variant_", ".tmp");
+            try {
+                Files.write(tmp, data);
+                Files.move(tmp, diskDir.resolve(fileName), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            putDisk(base, new DiskEntry(fileName, lastModified, data.length));
+        }
+        putMemory(key, data);
+        return data;
+    }
+
+    /**
+     * 登记新写入的磁盘文件，超出字节上限时淘汰最久未使用的其他变体
+     */
+    private void putDisk(String base, DiskEntry entry) throws IOException {
+        List<DiskEntry> victims = new ArrayList<>();
+        synchronized (disk) {
+            DiskEntry replaced = removeDisk(base);
+            if (replaced != null && !replaced.fileName.equals(entry.fileName)) {
+                victims.add(replaced);
+            }
+            disk.put(base, entry);
+            diskBytes += entry.size;
+            evictLocked(base, victims);
+        }
+        for (DiskEntry victim : victims) {
+            Files.deleteIfExists(diskDir.resolve(victim.fileName));
+        }
+    }
+
+    /**
+     * 超出磁盘上限时从最久未使用的一端移除（调用方持有 disk 的锁），keep 为刚写入的变体，不淘汰
+     */
+    private void evictLocked(String keep, List<DiskEntry> victims) {
+        Iterator<Map.Entry<String, DiskEntry>> it = disk.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && it.hasNext()) {
+            Map.Entry<String, DiskEntry> eldest = it.next();
+            if (eldest.getKey().equals(keep)) continue;
+            it.remove();
+            diskBytes -= eldest.getValue().size;
+            victims.add(eldest.getValue());
+        }
+    }
+
+    /**
+     * 从索引中移除（调用方持有 disk 的锁），返回被移除的条目
+     */
+    private DiskEntry removeDisk(String base) {
+        DiskEntry removed = disk.remove(base);
+        if (removed != null) {
+            diskBytes -= removed.size;
+        }
+        return removed;
+    }
+
+    /**
+     * 启动时扫描磁盘目录重建索引：按写入时间排列作为初始的 LRU 顺序；
+     * 不符合命名规则的文件（旧版本的缓存、残留的临时文件）以及同一变体的旧文件直接删除
+     */
+    private void loadDiskIndex() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(diskDir)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Map<Path, Long> written = new HashMap<>();
+        for (Path file : files) {
+            written.put(file, Files.getLastModifiedTime(file).toMillis());
+        }
+        files.sort(Comparator.comparing(written::get));
+        List<DiskEntry> stale = new ArrayList<>();
+        synchronized (disk) {
+            for (Path file : files) {
+                Matcher m = DISK_FILE.matcher(file.getFileName().toString());
+                if (!m.matches()) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                DiskEntry entry = new DiskEntry(file.getFileName().toString(),
+                        Long.parseUnsignedLong(m.group(2), 16), Files.size(file));
+                DiskEntry older = disk.put(m.group(1), entry);
+                diskBytes += entry.size;
+                if (older != null) {
+                    diskBytes -= older.size;
+                    stale.add(older);
+                }
+            }
+            evictLocked(null, stale); // 上限可能比上次运行时小
+        }
+        for (DiskEntry entry : stale) {
+            Files.deleteIfExists(diskDir.resolve(entry.fileName));
+        }
+    }
+
+    private void putMemory(String key, byte[] data) {
+        if (data.length > maxMemoryBytes / 8) return;
+        byte[] old = memory.put(key, data);
+        long total = memoryBytes.addAndGet(data.length - (old != null ? old.length : 0));
+        // 超出容量时按迭代顺序淘汰，直到回到上限以内
+        Iterator<Map.Entry<String, byte[]>> it = memory.entrySet().iterator();
+        while (total > maxMemoryBytes && it.hasNext()) {
+            Map.Entry<String, byte[]> victim = it.next();
+            if (victim.getKey().equals(key)) continue;
+            if (memory.remove(victim.getKey(), victim.getValue())) {
+                total = memoryBytes.addAndGet(-victim.getValue().length);
+            }
+        }
+    }
+
+    /**
+     * 变体的基名：源路径 + 宽度 + 格式的摘要（不含修改时间，同一变体的新旧文件同名前缀）
+     */
+    private static String baseName(String relativePath, int width, String format) {
+        try {
+            String id = relativePath + "|" + width + "|" + format;
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(id.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                name.append(String.format("%02x", digest[i] & 0xFF));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JDK 不支持 SHA-256", e);
+        }
+    }
+
+    public int size() { return memory.size(); }
+    public long getMemoryBytes() { return memoryBytes.get(); }
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+
+    /**
+     * 命中/未命中计数清零（启动预热结束后调用，预热的合成请求不计入 /status 的命中率）
+     */
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+    }
+    public int getQueueDepth() { return pool.getQueue().size(); }
+    public int getQueueCapacity() { return QUEUE_CAPACITY; }
+
+    public long getDiskBytes() {
+        synchronized (disk) {
+            return diskBytes;
+        }
+    }
+
+    /**
+     * 磁盘层的一个变体文件
+     */
+    private static final class DiskEntry {
+        final String fileName;
+        final long lastModified; // 生成时源文件的修改时间
+        final long size;
+
+        DiskEntry(String fileName, long lastModified, long size) {
+            this.fileName = fileName;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+
+    /**
+     * 缩放线程池繁忙（队列已满或等待超时），调用方应返回 503
+     */
+    public static class BusyException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public BusyException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.http.server.jfr;
+
+import java.net.InetAddress;
+
+/**
+ * JFR 事件的门面：服务器代码只依赖这个类，不直接引用 jdk.jfr。
+ * 运行时存在 jdk.jfr 模块时加载 JfrServerEvents（位于 src/main/jfr，只在 JDK 11+ 上编译），
+ * 否则使用什么也不做的空实现，核心代码因此可以用 javac --release 8 编译并在没有 JFR 的运行时上运行。
+ * 有时长的事件以 begin 返回的令牌表示，end 时传回；空实现返回 null。
+ */
+public class ServerEvents {
+
+    private static final String JFR_IMPLEMENTATION = "com.http.server.jfr.JfrServerEvents";
+    private static final ServerEvents INSTANCE = load();
+
+    protected ServerEvents() {
+    }
+
+    public static ServerEvents get() {
+        return INSTANCE;
+    }
+
+    private static ServerEvents load() {
+        try {
+            Class.forName("jdk.jfr.Event", false, ServerEvents.class.getClassLoader());
+            return (ServerEvents) Class.forName(JFR_IMPLEMENTATION).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ServerEvents();
+        }
+    }
+
+    /**
+     * 客户端连接开始处理
+     */
+    public Object beginConnection() {
+        return null;
+    }
+
+    public void endConnection(Object token, InetAddress remoteAddress, int requests, long bytesIn, long bytesOut) {
+    }
+
+    /**
+     * 请求头解析完成，headerNanos 为从第一个字节到解析完成的耗时
+     */
+    public void requestParsed(String method, String uri, String route, long headerBytes, long headerNanos) {
+    }
+
+    /**
+     * Router.route 与 Handler 开始执行
+     */
+    public Object beginHandler() {
+        return null;
+    }
+
+    public void endHandler(Object token, String route, String uri, int status) {
+    }
+
+    /**
+     * 上传请求开始处理（是否提交由 endUpload 决定，非上传路由直接丢弃令牌即可）
+     */
+    public Object beginUpload() {
+        return null;
+    }
+
+    public void endUpload(Object token, String route, String uri, long bytes, int status) {
+    }
+
+    /**
+     * 响应开始写出
+     */
+    public Object beginWrite() {
+        return null;
+    }
+
+    public void endWrite(Object token, String route, int status, long bytesIn, long bytesOut, long requestNanos) {
+    }
+
+    /**
+     * 静态内容缓存、图片变体缓存的一次查找；未录制时键的字符串不会生成
+     */
+    public void cacheLookup(String cache, Object key, boolean hit, long bytes) {
+    }
+}
@@ -0,0 +1,442 @@
+package com.http.server.log;
+
+import com.http.common.HttpRequest;
+import com.http.utils.ConsoleWriter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 访问日志：每个请求一行，Combined Log Format（末尾追加耗时微秒与请求字节数）或 JSON Lines。
+ * 工作线程在线程本地的可复用字节缓冲中拼出一行（不用 String.format，时间戳每秒只格式化一次），
+ * 复制成 byte[] 放进有界队列；后台线程成批写文件。队列满时丢弃并计数，不阻塞请求。
+ * 当前文件为 access.log，超过大小上限或到达时间边界时改名为 access-时间.log，并在后台压缩为 .gz。
+ * 未配置目录时不启用。
+ */
+public class AccessLog {
+
+    public enum Format { COMBINED, JSON }
+
+    private static final int QUEUE_CAPACITY = 16384;
+    private static final int BATCH_LIMIT = 1024;
+    private static final String CURRENT_FILE = "access.log";
+    private static final DateTimeFormatter CLF_TIME =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+    private static final DateTimeFormatter ROTATED_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private static Path configuredDir;
+    private static Format configuredFormat = Format.COMBINED;
+    private static long configuredMaxBytes = 64L * 1024 * 1024;
+    private static long configuredRotateMillis = TimeUnit.DAYS.toMillis(1);
+    private static AccessLog instance;
+
+    private final Path dir;
+    private final Format format;
+    private final long maxBytes;
+    private final long rotateMillis;
+    private final ArrayBlockingQueue<byte[]> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private final ThreadLocal<LineBuffer> lines = ThreadLocal.withInitial(LineBuffer::new);
+    private final ExecutorService compressor;
+    private volatile CachedTime cachedTime = new CachedTime(-1, null, null);
+
+    // 以下字段只由写线程（或退出时的 flush）在 synchronized 内访问
+    private OutputStream out;
+    private long fileBytes;
+    private long nextRotateAt;
+
+    /**
+     * 启用访问日志，需在首次 getInstance 之前调用；dir 为 null 表示不启用
+     */
+    public static synchronized void configure(Path dir, Format format, long maxBytes, long rotateMillis) {
+        if (maxBytes <= 0 || rotateMillis <= 0) {
+            throw new IllegalArgumentException("访问日志的大小上限与轮转周期必须大于 0");
+        }
+        configuredDir = dir;
+        configuredFormat = format;
+        configuredMaxBytes = maxBytes;
+        configuredRotateMillis = rotateMillis;
+    }
+
+    public static synchronized AccessLog getInstance() {
+        if (instance == null) {
+            instance = new AccessLog(configuredDir, configuredFormat, configuredMaxBytes, configuredRotateMillis);
+        }
+        return instance;
+    }
+
+    private AccessLog(Path dir, Format format, long maxBytes, long rotateMillis) {
+        this.dir = dir;
+        this.format = format;
+        this.maxBytes = maxBytes;
+        this.rotateMillis = rotateMillis;
+        if (dir == null) {
+            this.queue = null;
+            this.compressor = null;
+            return;
+        }
+        this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        this.compressor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "access-log-gzip");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Files.createDirectories(dir);
+            compressLeftovers();
+            openCurrent();
+        } catch (IOException e) {
+            ConsoleWriter.logError("打开访问日志失败: " + e.getMessage());
+        }
+        Thread writer = new Thread(this::writeLoop, "access-log");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flushRemaining, "access-log-flush"));
+        ConsoleWriter.logServer("访问日志: " + dir.resolve(CURRENT_FILE) + "（" + format.name().toLowerCase() + "）");
+    }
+
+    public boolean isEnabled() {
+        return queue != null;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * 记录一个请求（在处理请求的线程中调用，只做格式化与入队）
+     */
+    public void log(HttpRequest request, int status, long bytesIn, long bytesOut, long durationMicros) {
+        if (queue == null) return;
+        CachedTime time = currentTime();
+        LineBuffer line = lines.get();
+        line.reset();
+        String remote = request.getRemoteAddress();
+        String referer = request.getHeaders().get("Referer");
+        String userAgent = request.getHeaders().get("User-Agent");
+        if (format == Format.JSON) {
+            line.ascii("{\"time\":\"").raw(time.iso)
+                    .ascii("\",\"remote\":").jsonString(remote)
+                    .ascii(",\"method\":").jsonString(request.getMethod())
+                    .ascii(",\"uri\":").jsonString(request.getUri())
+                    .ascii(",\"protocol\":").jsonString(request.getVersion())
+                    .ascii(",\"status\":").number(status)
+                    .ascii(",\"bytes_in\":").number(bytesIn)
+                    .ascii(",\"bytes_out\":").number(bytesOut)
+                    .ascii(",\"duration_us\":").number(durationMicros)
+                    .ascii(",\"referer\":").jsonString(referer)
+                    .ascii(",\"user_agent\":").jsonString(userAgent)
+                    .ascii("}\n");
+        } else {
+            // host ident user [time] "request" status bytes "referer" "user-agent" duration_us bytes_in
+            line.clfField(remote).ascii(" - - [").raw(time.clf).ascii("] \"")
+                    .clfText(request.getMethod()).ascii(" ").clfText(request.getUri())
+                    .ascii(" ").clfText(request.getVersion()).ascii("\" ")
+                    .number(status).ascii(" ");
+            if (bytesOut > 0) {
+                line.number(bytesOut);
+            } else {
+                line.ascii("-");
+            }
+            line.ascii(" \"").clfText(referer == null ? "-" : referer)
+                    .ascii("\" \"").clfText(userAgent == null ? "-" : userAgent).ascii("\" ")
+                    .number(durationMicros).ascii(" ").number(bytesIn).ascii("\n");
+        }
+        if (!queue.offer(line.toByteArray())) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * 时间戳按秒缓存：同一秒内的请求共用格式化结果
+     */
+    private CachedTime currentTime() {
+        long second = System.currentTimeMillis() / 1000;
+        CachedTime time = cachedTime;
+        if (time.second != second) {
+            ZonedDateTime now = Instant.ofEpochSecond(second).atZone(ZoneId.systemDefault());
+            time = new CachedTime(second,
+                    now.format(CLF_TIME).getBytes(StandardCharsets.US_ASCII),
+                    now.format(DateTimeFormatter.ISO_OFFSET_DATE_TIME).getBytes(StandardCharsets.US_ASCII));
+            cachedTime = time;
+        }
+        return time;
+    }
+
+    private void writeLoop() {
+        List<byte[]> batch = new ArrayList<>(BATCH_LIMIT);
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, BATCH_LIMIT - 1);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private synchronized void write(List<byte[]> batch) {
+        try {
+            if (out == null) {
+                openCurrent(); // 之前打开失败时重试
+            }
+            for (byte[] entry : batch) {
+                if (fileBytes >= maxBytes || System.currentTimeMillis() >= nextRotateAt) {
+                    rotate();
+                }
+                out.write(entry);
+                fileBytes += entry.length;
+            }
+            out.flush();
+        } catch (IOException e) {
+            dropped.addAndGet(batch.size());
+            ConsoleWriter.logError("写访问日志失败: " + e.getMessage());
+            closeQuietly();
+        }
+    }
+
+    private synchronized void flushRemaining() {
+        List<byte[]> batch = new ArrayList<>();
+        queue.drainTo(batch);
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void openCurrent() throws IOException {
+        Path file = dir.resolve(CURRENT_FILE);
+        out = new BufferedOutputStream(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND), 64 * 1024);
+        fileBytes = Files.size(file);
+        long now = System.currentTimeMillis();
+        // 按本地时间对齐到整点/整天等边界
+        long offset = ZoneId.systemDefault().getRules().getOffset(Instant.ofEpochMilli(now)).getTotalSeconds() * 1000L;
+        nextRotateAt = ((now + offset) / rotateMillis + 1) * rotateMillis - offset;
+    }
+
+    /**
+     * 轮转：关闭并改名当前文件，后台压缩，再打开新的 access.log
+     */
+    private void rotate() throws IOException {
+        closeQuietly();
+        Path current = dir.resolve(CURRENT_FILE);
+        if (Files.exists(current) && Files.size(current) > 0) {
+            String stamp = ZonedDateTime.now().format(ROTATED_NAME);
+            Path rotated = dir.resolve("access-" + stamp + ".log");
+            for (int i = 1; Files.exists(rotated) || Files.exists(gzipPath(rotated)); i++) {
+                rotated = dir.resolve("access-" + stamp + "-" + i + ".log");
+            }
+            Files.move(current, rotated, StandardCopyOption.ATOMIC_MOVE);
+            Path toCompress = rotated;
+            compressor.execute(() -> compress(toCompress));
+        }
+        openCurrent();
+    }
+
+    /**
+     * 上次运行轮转后还没来得及压缩的文件
+     */
+    private void compressLeftovers() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "access-*.log")) {
+            for (Path file : stream) {
+                compressor.execute(() -> compress(file));
+            }
+        }
+    }
+
+    private static void compress(Path file) {
+        Path gz = gzipPath(file);
+        Path tmp = gz.resolveSibling(gz.getFileName() + ".tmp");
+        try {
+            try (InputStream in = Files.newInputStream(file);
+                 GZIPOutputStream zip = new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    zip.write(buffer, 0, read);
+                }
+            }
+            Files.move(tmp, gz, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(file);
+        } catch (IOException e) {
+            ConsoleWriter.logError("压缩访问日志失败: " + file + " - " + e.getMessage());
+        }
+    }
+
+    private static Path gzipPath(Path file) {
+        return file.resolveSibling(file.getFileName() + ".gz");
+    }
+
+    private void closeQuietly() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException ignored) {
+        }
+        out = null;
+    }
+
+    private static final class CachedTime {
+        final long second;
+        final byte[] clf;
+        final byte[] iso;
+
+        CachedTime(long second, byte[] clf, byte[] iso) {
+            this.second = second;
+            this.clf = clf;
+            this.iso = iso;
+        }
+    }
+
+    /**
+     * 线程本地的可复用行缓冲，直接按字节拼接
+     */
+    private static final class LineBuffer {
+        private byte[] buf = new byte[512];
+        private int length;
+        private final byte[] digits = new byte[20];
+
+        void reset() {
+            length = 0;
+        }
+
+        byte[] toByteArray() {
+            byte[] copy = new byte[length];
+            System.arraycopy(buf, 0, copy, 0, length);
+            return copy;
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > buf.length) {
+                byte[] grown = new byte[Math.max(buf.length * 2, length + extra)];
+                System.arraycopy(buf, 0, grown, 0, length);
+                buf = grown;
+            }
+        }
+
+        private void put(int b) {
+            ensure(1);
+            buf[length++] = (byte) b;
+        }
+
+        LineBuffer raw(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, length, bytes.length);
+            length += bytes.length;
+            return this;
+        }
+
+        /**
+         * 只用于代码里的 ASCII 常量
+         */
+        LineBuffer ascii(String s) {
+            ensure(s.length());
+            for (int i = 0; i < s.length(); i++) {
+                buf[length++] = (byte) s.charAt(i);
+            }
+            return this;
+        }
+
+        LineBuffer number(long value) {
+            if (value < 0) {
+                put('-');
+                value = -value;
+            }
+            int n = 0;
+            do {
+                digits[n++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            ensure(n);
+            while (n > 0) {
+                buf[length++] = digits[--n];
+            }
+            return this;
+        }
+
+        LineBuffer clfField(String s) {
+            return s == null || s.isEmpty() ? ascii("-") : clfText(s);
+        }
+
+        /**
+         * CLF 中的文本：与 Apache 一致，引号、反斜杠、控制字符和非 ASCII 字节写成 \xhh
+         */
+        LineBuffer clfText(String s) {
+            if (s == null) return this;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c >= 0x20 && c < 0x7F && c != '"' && c != '\\') {
+                    put(c);
+                } else if (c < 0x80) {
+                    escapeByte(c);
+                } else {
+                    int end = Character.isHighSurrogate(c) && i + 1 < s.length() ? i + 2 : i + 1;
+                    for (byte b : s.substring(i, end).getBytes(StandardCharsets.UTF_8)) {
+                        escapeByte(b & 0xFF);
+                    }
+                    i = end - 1;
+                }
+            }
+            return this;
+        }
+
+        private void escapeByte(int b) {
+            put('\\');
+            put('x');
+            put(HEX[b >>> 4]);
+            put(HEX[b & 0xF]);
+        }
+
+        /**
+         * JSON 字符串（含引号），null 写为 null；非 ASCII 字符按 UTF-8 原样写入
+         */
+        LineBuffer jsonString(String s) {
+            if (s == null) return ascii("null");
+            put('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '"' || c == '\\') {
+                    put('\\');
+                    put(c);
+                } else if (c < 0x20) {
+                    ascii("\\u00");
+                    put(HEX[c >>> 4]);
+                    put(HEX[c & 0xF]);
+                } else if (c < 0x80) {
+                    put(c);
+                } else if (Character.isHighSurrogate(c) && i + 1 < s.length()) {
+                    raw(s.substring(i, i + 2).getBytes(StandardCharsets.UTF_8));
+                    i++;
+                } else {
+                    raw(String.valueOf(c).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            put('"');
+            return this;
+        }
+    }
+}
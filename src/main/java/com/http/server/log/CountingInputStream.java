@@ -0,0 +1,65 @@
+package com.http.server.log;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 统计读取字节数的输入流，并记录“开始等待请求”之后读到第一个字节的时刻，
+ * 长连接上两次请求之间的空闲时间因此不计入请求耗时。每个连接由单个线程使用，不做同步。
+ */
+public class CountingInputStream extends FilterInputStream {
+
+    private long count;
+    private boolean waitingForRequest;
+    private long requestStartNanos = System.nanoTime();
+
+    public CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * 准备读取下一个请求：之后读到的第一个字节作为该请求的开始时刻
+     */
+    public void markRequestStart() {
+        waitingForRequest = true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1) {
+            counted(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            counted(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = in.skip(n);
+        if (skipped > 0) {
+            counted(skipped);
+        }
+        return skipped;
+    }
+
+    private void counted(long bytes) {
+        if (waitingForRequest) {
+            waitingForRequest = false;
+            requestStartNanos = System.nanoTime();
+        }
+        count += bytes;
+    }
+
+    public long getCount() { return count; }
+    public long getRequestStartNanos() { return requestStartNanos; }
+}
@@ -0,0 +1,32 @@
+package com.http.server.log;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 统计写出字节数的输出流。每个连接由单个线程使用，不做同步。
+ */
+public class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+
+    public CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // FilterOutputStream 默认逐字节写，这里直接整块转发
+        out.write(b, off, len);
+        count += len;
+    }
+
+    public long getCount() { return count; }
+}
@@ -0,0 +1,83 @@
+package com.http.server.log;
+
+import com.http.common.HttpRequest;
+import com.http.server.metrics.RequestTimings;
+import com.http.utils.ConsoleWriter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 慢请求日志：总耗时超过阈值的请求输出各阶段耗时、请求行与收发字节数，定位 p99 的时间花在哪个阶段。
+ * 慢请求全部计数，但只按 1/sampleEvery 采样输出，避免雪崩时日志本身成为负担。
+ * 输出经 ConsoleWriter（异步、受日志级别控制）。
+ */
+public class SlowRequestLog {
+
+    private static long configuredThresholdMillis = 1000;
+    private static int configuredSampleEvery = 1;
+    private static SlowRequestLog instance;
+
+    private final long thresholdNanos;
+    private final int sampleEvery;
+    private final AtomicLong slowRequests = new AtomicLong();
+
+    /**
+     * 设置阈值（毫秒，0 表示关闭）与采样间隔（每 N 个慢请求输出 1 个），需在首次 getInstance 之前调用
+     */
+    public static synchronized void configure(long thresholdMillis, int sampleEvery) {
+        configuredThresholdMillis = thresholdMillis;
+        configuredSampleEvery = Math.max(1, sampleEvery);
+    }
+
+    public static synchronized SlowRequestLog getInstance() {
+        if (instance == null) {
+            instance = new SlowRequestLog(configuredThresholdMillis, configuredSampleEvery);
+        }
+        return instance;
+    }
+
+    private SlowRequestLog(long thresholdMillis, int sampleEvery) {
+        this.thresholdNanos = thresholdMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(thresholdMillis) : Long.MAX_VALUE;
+        this.sampleEvery = sampleEvery;
+    }
+
+    /**
+     * 请求完成后调用：未超过阈值时只有一次比较
+     */
+    public void record(HttpRequest request, String routeKey, int status, long bytesIn, long bytesOut,
+                       RequestTimings timings) {
+        if (timings.getTotalNanos() < thresholdNanos) {
+            return;
+        }
+        if (slowRequests.incrementAndGet() % sampleEvery != 0) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("慢请求 ");
+        appendMillis(sb, timings.getTotalNanos());
+        sb.append(' ').append(request.getMethod()).append(' ').append(request.getUri()).append(' ')
+                .append(request.getVersion()).append(" -> ").append(status)
+                .append(" route=").append(routeKey)
+                .append(" client=").append(request.getRemoteAddress())
+                .append(" in=").append(bytesIn).append("B out=").append(bytesOut).append('B');
+        for (RequestTimings.Phase phase : RequestTimings.Phase.values()) {
+            sb.append(' ').append(phase.getLabel()).append('=');
+            appendMillis(sb, timings.getNanos(phase));
+        }
+        ConsoleWriter.logServer(sb.toString());
+    }
+
+    public long getSlowRequests() {
+        return slowRequests.get();
+    }
+
+    private static void appendMillis(StringBuilder sb, long nanos) {
+        long micros = nanos / 1000;
+        sb.append(micros / 1000).append('.');
+        long fraction = micros % 1000;
+        if (fraction < 100) sb.append('0');
+        if (fraction < 10) sb.append('0');
+        sb.append(fraction).append("ms");
+    }
+}
@@ -0,0 +1,127 @@
+package com.http.server.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数-线性分桶的延迟直方图（与 HdrHistogram 思路相同，内存固定）。
+ * 数值单位为微秒：小于 16 的值每个值一个桶；之后每个 2 的幂区间再等分为 16 个子桶，相对误差不超过 1/16。
+ * 覆盖 0 到约 2^42 微秒（约 50 天），超出的值计入最后一个桶。共 624 个桶，约 5 KB。
+ * 记录只是一次下标计算加一次原子自增，不加锁；读取时各桶之间不是同一时刻的快照，对监控足够。
+ * 细粒度桶的边界与 Prometheus 导出的整数边界（如 250 微秒）对不齐，因此可另给一组导出边界，
+ * 按边界单独计数（一次二分查找加一次原子自增），导出的累积桶是精确的 “≤ 边界” 计数。
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 41;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    // 导出边界（升序）；boundCounts[i] 为落在 (bounds[i-1], bounds[i]] 的记录数，最后一格为超过最大边界的
+    private final long[] bounds;
+    private final AtomicLongArray boundCounts;
+
+    public LatencyHistogram() {
+        this(new long[0]);
+    }
+
+    /**
+     * @param exportBounds 导出累积桶的边界（微秒，升序）
+     */
+    public LatencyHistogram(long[] exportBounds) {
+        this.bounds = exportBounds.clone();
+        this.boundCounts = new AtomicLongArray(bounds.length + 1);
+    }
+
+    public void record(long micros) {
+        if (micros < 0) micros = 0;
+        counts.incrementAndGet(bucketOf(micros));
+        int bound = Arrays.binarySearch(bounds, micros);
+        boundCounts.incrementAndGet(bound >= 0 ? bound : -bound - 1);
+        sum.add(micros);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * 桶内的最大值（含）
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * 导出边界的累积计数：第 i 个为小于等于第 i 个边界的记录数，最后一个为总数（+Inf）。
+     * 各格只读一次、由同一份快照累加，结果单调不减，+Inf 不会小于任何有限桶
+     */
+    public long[] cumulativeCounts() {
+        long[] cumulative = new long[boundCounts.length()];
+        long total = 0;
+        for (int i = 0; i < cumulative.length; i++) {
+            total += boundCounts.get(i);
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+
+    /**
+     * 导出边界（微秒）
+     */
+    public long[] getExportBounds() {
+        return bounds.clone();
+    }
+
+    /**
+     * 分位数（0~1），返回所在桶的上界；没有记录时返回 0
+     */
+    public long percentile(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && snapshot[i] > 0) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(BUCKETS - 1);
+    }
+}
@@ -0,0 +1,58 @@
+package com.http.server.metrics;
+
+import java.util.Arrays;
+
+/**
+ * 一个请求各阶段的耗时（System.nanoTime），每个连接复用一个实例，由连接线程独占使用。
+ * 阶段依次首尾相接：end(phase) 把上一个时间点到现在的时长累加到该阶段。
+ */
+public class RequestTimings {
+
+    public enum Phase {
+        HEADER("header"),   // 第一个字节到请求头解析完成
+        ADMIT("admit"),     // 准入检查（登录限流）
+        BODY("body"),       // 读取或丢弃请求体（流式路由的请求体在 handler 中读取）
+        HANDLER("handler"), // Router.route 与 Handler
+        WRITE("write");     // 序列化并写出响应
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() { return label; }
+    }
+
+    static final Phase[] PHASES = Phase.values();
+
+    private final long[] nanos = new long[PHASES.length];
+    private long startNanos;
+    private long lastNanos;
+
+    /**
+     * 开始计时一个新请求
+     */
+    public void start(long startNanos) {
+        this.startNanos = startNanos;
+        this.lastNanos = startNanos;
+        Arrays.fill(nanos, 0);
+    }
+
+    /**
+     * 结束一个阶段
+     */
+    public void end(Phase phase) {
+        long now = System.nanoTime();
+        nanos[phase.ordinal()] += now - lastNanos;
+        lastNanos = now;
+    }
+
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        return lastNanos - startNanos;
+    }
+}
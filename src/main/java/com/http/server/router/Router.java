@@ -3,54 +3,126 @@ package com.http.server.router;
 import com.http.common.HttpRequest;
 import com.http.common.HttpResponse;
 import com.http.common.HttpStatus;
+import com.http.server.handler.ImageHandler;
 import com.http.server.handler.LoginHandler;
+import com.http.server.handler.MetricsHandler;
 import com.http.server.handler.RegisterHandler;
+import com.http.server.handler.ResumableUploadHandler;
+import com.http.server.handler.SessionHandler;
 import com.http.server.handler.StaticFileHandler;
+import com.http.server.handler.StoredFileHandler;
 import com.http.server.handler.FileUploadHandler;
+import com.http.server.throttle.LoginRateLimiter;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
 
 public class Router {
-    private final LoginHandler loginHandler;
-    private final RegisterHandler registerHandler;
-    private final StaticFileHandler staticFileHandler;
-    private final FileUploadHandler fileUploadHandler;
+    // 分派表：按顺序匹配，第一条命中的规则决定路由名，都不命中时为 DEFAULT_ROUTE。
+    // routeKey 与 route 都只查这张表，路由名与实际处理器不会不一致
+    private static final RouteRule[] RULES = {
+            new RouteRule("redirect", (uri, method) -> "/old-page".equals(uri) || "/redirect-test".equals(uri)),
+            // 支持 /login 和 /api/login 两种格式
+            new RouteRule("login", (uri, method) -> "/login".equals(uri) || "/api/login".equals(uri)),
+            new RouteRule("session", (uri, method) -> SessionHandler.PATH.equals(uri)),
+            new RouteRule("register", (uri, method) ->
+                    ("/register".equals(uri) || "/api/register".equals(uri)) && "POST".equalsIgnoreCase(method)),
+            new RouteRule("upload", (uri, method) ->
+                    ("/upload".equals(uri) || "/api/upload".equals(uri)) && "POST".equalsIgnoreCase(method)),
+            new RouteRule("resumable", (uri, method) ->
+                    ResumableUploadHandler.PREFIX.equals(uri) || uri.startsWith(ResumableUploadHandler.PREFIX + "/")),
+            new RouteRule("files", (uri, method) -> uri.startsWith(StoredFileHandler.PREFIX)),
+            new RouteRule("img", (uri, method) -> uri.startsWith(ImageHandler.PREFIX)),
+            new RouteRule("metrics", (uri, method) -> MetricsHandler.PATH.equals(uri)),
+    };
+    private static final String DEFAULT_ROUTE = "static";
+
+    // routeKey 可能返回的全部路由名（指标按此预先建好）
+    public static final String[] ROUTES = routeNames();
+
+    // 路由名 -> 处理器，构造时按 ROUTES 校验齐全
+    private final Map<String, Function<HttpRequest, HttpResponse>> handlers = new HashMap<>();
 
     public Router() {
-        this.loginHandler = new LoginHandler();
-        this.registerHandler = new RegisterHandler();
-        this.staticFileHandler = new StaticFileHandler();
-        this.fileUploadHandler = new FileUploadHandler();
+        handlers.put("redirect", this::redirect);
+        handlers.put("login", new LoginHandler()::handle);
+        // 会话校验 / 注销
+        handlers.put("session", new SessionHandler()::handle);
+        handlers.put("register", new RegisterHandler()::handle);
+        handlers.put("upload", new FileUploadHandler()::handle);
+        // 断点续传：创建会话 / 查询偏移 / 追加分片 / 完成
+        handlers.put("resumable", new ResumableUploadHandler()::handle);
+        // 上传存储中的文件（按上传 ID 访问）
+        handlers.put("files", new StoredFileHandler()::handle);
+        // 按宽度缩放的图片变体：/img/oguri.jpg?w=200
+        handlers.put("img", new ImageHandler()::handle);
+        // Prometheus 指标
+        handlers.put("metrics", new MetricsHandler()::handle);
+        // 默认：静态文件处理
+        handlers.put(DEFAULT_ROUTE, new StaticFileHandler()::handle);
+        for (String route : ROUTES) {
+            if (!handlers.containsKey(route)) {
+                throw new IllegalStateException("路由没有对应的处理器: " + route);
+            }
+        }
     }
 
     /**
-     * 根据请求路径和方法，路由到对应的处理器
+     * 是否为流式读取请求体的路由（上传）：此类请求的请求体不预先读入内存，
+     * 由 Handler 通过 HttpRequest.getBodyStream() 边读边写盘
      */
-    public HttpResponse route(HttpRequest request) {
-        String uri = request.getUri();
-        String method = request.getMethod();
+    public boolean isStreamingRoute(HttpRequest request) {
+        return "upload".equals(routeKey(request)) || ResumableUploadHandler.isChunkRequest(request);
+    }
 
-        // 301 永久重定向示例：/old-page -> /new-page.html
-        if ("/old-page".equals(uri)) {
-            return createRedirectResponse("/new-page.html", HttpStatus.MOVED_PERMANENTLY);
+    /**
+     * 读取请求体之前的准入检查：需要拒绝时返回响应（此时请求体不会被读入），否则返回 null
+     */
+    public HttpResponse admit(HttpRequest request) {
+        if ("login".equals(routeKey(request)) && "POST".equalsIgnoreCase(request.getMethod())) {
+            return LoginRateLimiter.getInstance().checkAddress(request.getRemoteAddress());
         }
+        return null;
+    }
 
-        // 302 临时重定向示例：/redirect-test -> /new-page.html
-        if ("/redirect-test".equals(uri)) {
-            return createRedirectResponse("/new-page.html", HttpStatus.FOUND);
+    /**
+     * 请求所属路由的稳定名称（分派表中第一条命中的规则）；用于按路由配置限速、指标等
+     */
+    public String routeKey(HttpRequest request) {
+        String uri = request.getUri();
+        String method = request.getMethod();
+        for (RouteRule rule : RULES) {
+            if (rule.matcher.test(uri, method)) {
+                return rule.key;
+            }
         }
+        return DEFAULT_ROUTE;
+    }
 
-        // API路由 - 支持 /login 和 /api/login 两种格式
-        if (("/login".equals(uri) || "/api/login".equals(uri)) ) {
-            return loginHandler.handle(request);
-            //
-        } else if (("/register".equals(uri) || "/api/register".equals(uri)) && "POST".equalsIgnoreCase(method)) {
-            return registerHandler.handle(request);
-        } else if (("/upload".equals(uri) || "/api/upload".equals(uri)) && "POST".equalsIgnoreCase(method)) {
-            return fileUploadHandler.handle(request);
-        } 
-        // 默认：静态文件处理
-        else {
-            return staticFileHandler.handle(request);
+    /**
+     * 根据请求路径和方法，路由到对应的处理器
+     */
+    public HttpResponse route(HttpRequest request) {
+        return handlers.get(routeKey(request)).apply(request);
+    }
+
+    /**
+     * 重定向示例：/old-page 301 永久重定向，/redirect-test 302 临时重定向，目标均为 /new-page.html
+     */
+    private HttpResponse redirect(HttpRequest request) {
+        int status = "/old-page".equals(request.getUri()) ? HttpStatus.MOVED_PERMANENTLY : HttpStatus.FOUND;
+        return createRedirectResponse("/new-page.html", status);
+    }
+
+    private static String[] routeNames() {
+        String[] names = new String[RULES.length + 1];
+        for (int i = 0; i < RULES.length; i++) {
+            names[i] = RULES[i].key;
         }
+        names[RULES.length] = DEFAULT_ROUTE;
+        return names;
     }
 
     /**
@@ -71,4 +143,17 @@ public class Router {
         
         return response;
     }
+
+    /**
+     * 分派表中的一条规则：路由名与按 URI / 方法的匹配条件
+     */
+    private static final class RouteRule {
+        final String key;
+        final BiPredicate<String, String> matcher;
+
+        RouteRule(String key, BiPredicate<String, String> matcher) {
+            this.key = key;
+            this.matcher = matcher;
+        }
+    }
 }
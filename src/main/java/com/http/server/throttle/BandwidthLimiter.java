@@ -0,0 +1,141 @@
+package com.http.server.throttle;
+
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 带宽整形配置与共享令牌桶。
+ * 三级限制：单连接、单 IP（同一地址的所有连接共享）、全局；上传（读）与下载（写）分别计量。
+ * 速率为 0 表示该级不限速。路由可以覆盖单连接速率，也可以整体豁免（登录等交互请求不受批量传输影响）。
+ * 配置需在第一次 getInstance 之前通过 configure 等方法完成。
+ */
+public class BandwidthLimiter {
+
+    // 每个桶至少允许的突发量；也是读写切片的上限，保证单次等待不会过长
+    static final int SLICE_BYTES = 16 * 1024;
+    private static final long MIN_BURST_BYTES = 4L * SLICE_BYTES;
+    // 单 IP 桶的空闲回收
+    private static final int MAX_TRACKED_ADDRESSES = 10_000;
+    private static final long ADDRESS_IDLE_MILLIS = 60_000;
+
+    private static long globalRate;
+    private static long perAddressRate;
+    private static long perConnectionRate;
+    private static final Map<String, Long> routeConnectionRates = new ConcurrentHashMap<>();
+    private static final Set<String> exemptRoutes = ConcurrentHashMap.newKeySet();
+    private static BandwidthLimiter instance;
+
+    static {
+        // 登录、注册等小请求默认不整形
+        exemptRoutes.add("login");
+        exemptRoutes.add("register");
+        exemptRoutes.add("redirect");
+        exemptRoutes.add("session");
+        exemptRoutes.add("metrics");
+    }
+
+    private final TokenBucket globalIn;
+    private final TokenBucket globalOut;
+    private final ConcurrentHashMap<InetAddress, AddressBuckets> addresses = new ConcurrentHashMap<>();
+
+    private BandwidthLimiter() {
+        this.globalIn = newBucket(globalRate);
+        this.globalOut = newBucket(globalRate);
+    }
+
+    /**
+     * 设置三级速率（字节/秒，0 不限速）
+     */
+    public static synchronized void configure(long global, long perAddress, long perConnection) {
+        globalRate = global;
+        perAddressRate = perAddress;
+        perConnectionRate = perConnection;
+    }
+
+    /**
+     * 覆盖某个路由（见 Router.routeKey）的单连接速率
+     */
+    public static void setRouteLimit(String routeKey, long bytesPerSecond) {
+        routeConnectionRates.put(routeKey, bytesPerSecond);
+    }
+
+    /**
+     * 设置路由是否豁免全部限速
+     */
+    public static void setExempt(String routeKey, boolean exempt) {
+        if (exempt) {
+            exemptRoutes.add(routeKey);
+        } else {
+            exemptRoutes.remove(routeKey);
+        }
+    }
+
+    public static synchronized BandwidthLimiter getInstance() {
+        if (instance == null) {
+            instance = new BandwidthLimiter();
+        }
+        return instance;
+    }
+
+    /**
+     * 是否配置了任何限速；都未配置时连接直接使用原始流
+     */
+    public boolean isEnabled() {
+        return globalRate > 0 || perAddressRate > 0 || perConnectionRate > 0 || !routeConnectionRates.isEmpty();
+    }
+
+    /**
+     * 为新连接创建整形器
+     */
+    public Throttle newThrottle(InetAddress address) {
+        AddressBuckets shared = null;
+        if (perAddressRate > 0 && address != null) {
+            if (addresses.size() >= MAX_TRACKED_ADDRESSES) {
+                purgeIdleAddresses();
+            }
+            shared = addresses.computeIfAbsent(address, a -> new AddressBuckets());
+        }
+        return new Throttle(this, shared);
+    }
+
+    boolean isExempt(String routeKey) {
+        return routeKey != null && exemptRoutes.contains(routeKey);
+    }
+
+    long connectionRateFor(String routeKey) {
+        Long rate = routeKey == null ? null : routeConnectionRates.get(routeKey);
+        return rate != null ? rate : perConnectionRate;
+    }
+
+    TokenBucket globalBucket(boolean inbound) {
+        return inbound ? globalIn : globalOut;
+    }
+
+    public int getTrackedAddresses() {
+        return addresses.size();
+    }
+
+    private void purgeIdleAddresses() {
+        long cutoff = System.currentTimeMillis() - ADDRESS_IDLE_MILLIS;
+        addresses.values().removeIf(buckets -> buckets.lastUsed < cutoff);
+    }
+
+    static TokenBucket newBucket(long bytesPerSecond) {
+        if (bytesPerSecond <= 0) {
+            return null;
+        }
+        // 突发量约为 100ms 的流量
+        return new TokenBucket(bytesPerSecond, Math.max(MIN_BURST_BYTES, bytesPerSecond / 10));
+    }
+
+    /**
+     * 同一 IP 的所有连接共享的一对桶
+     */
+    static class AddressBuckets {
+        final TokenBucket in = newBucket(perAddressRate);
+        final TokenBucket out = newBucket(perAddressRate);
+        volatile long lastUsed = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,92 @@
+package com.http.server.throttle;
+
+import com.http.common.HttpResponse;
+import com.http.common.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 登录限流：按客户端 IP 统计登录尝试次数，按用户名统计失败次数，均为近似滑动窗口。
+ * IP 检查在读取请求体之前完成（撞库时连 JSON 都不解析），用户名检查在密码校验之前完成，
+ * 超限时返回 429 + Retry-After，不消耗密码哈希线程池。
+ */
+public class LoginRateLimiter {
+
+    private static final long WINDOW_MILLIS = 60_000;
+    private static final int SKETCH_WIDTH = 8192;
+    // 429 的响应体只编码一次
+    private static final byte[] TOO_MANY_BODY =
+            "{\"status\":\"error\",\"message\":\"too many login attempts\"}".getBytes(StandardCharsets.UTF_8);
+
+    private static int configuredPerAddress = 30;
+    private static int configuredPerUsername = 10;
+    private static LoginRateLimiter instance;
+
+    private final int perAddressLimit;
+    private final int perUsernameLimit;
+    private final SlidingWindowCounter attemptsByAddress = new SlidingWindowCounter(WINDOW_MILLIS, SKETCH_WIDTH);
+    private final SlidingWindowCounter failuresByUsername = new SlidingWindowCounter(WINDOW_MILLIS, SKETCH_WIDTH);
+
+    private LoginRateLimiter(int perAddressLimit, int perUsernameLimit) {
+        this.perAddressLimit = perAddressLimit;
+        this.perUsernameLimit = perUsernameLimit;
+    }
+
+    /**
+     * 每分钟每个 IP 的登录尝试上限、每个用户名的失败上限，需在第一次 getInstance 之前调用
+     */
+    public static synchronized void configure(int perAddress, int perUsername) {
+        configuredPerAddress = perAddress;
+        configuredPerUsername = perUsername;
+    }
+
+    public static synchronized LoginRateLimiter getInstance() {
+        if (instance == null) {
+            instance = new LoginRateLimiter(configuredPerAddress, configuredPerUsername);
+        }
+        return instance;
+    }
+
+    /**
+     * 记一次来自 address 的登录尝试；超限时返回 429 响应，否则返回 null
+     */
+    public HttpResponse checkAddress(String address) {
+        if (address == null) return null;
+        long now = System.currentTimeMillis();
+        if (attemptsByAddress.incrementAndEstimate(address, now) <= perAddressLimit) {
+            return null;
+        }
+        return tooManyRequests(attemptsByAddress.millisUntilBelow(address, perAddressLimit, now));
+    }
+
+    /**
+     * 用户名最近失败次数已达上限时返回 429 响应，否则返回 null（不计数）
+     */
+    public HttpResponse checkUsername(String username) {
+        long now = System.currentTimeMillis();
+        if (failuresByUsername.estimate(username, now) < perUsernameLimit) {
+            return null;
+        }
+        return tooManyRequests(failuresByUsername.millisUntilBelow(username, perUsernameLimit, now));
+    }
+
+    /**
+     * 记一次用户名的登录失败
+     */
+    public void recordFailure(String username) {
+        failuresByUsername.incrementAndEstimate(username, System.currentTimeMillis());
+    }
+
+    private HttpResponse tooManyRequests(long retryAfterMillis) {
+        long seconds = Math.max(1, (retryAfterMillis + 999) / 1000);
+        HttpResponse resp = new HttpResponse();
+        resp.setVersion("HTTP/1.1");
+        resp.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        resp.setReasonPhrase(HttpStatus.getReasonPhrase(HttpStatus.TOO_MANY_REQUESTS));
+        resp.addHeader("Retry-After", String.valueOf(seconds));
+        resp.addHeader("Content-Type", "application/json; charset=utf-8");
+        resp.addHeader("Cache-Control", "no-store");
+        resp.setBody(TOO_MANY_BODY); // 同时设置 Content-Length
+        return resp;
+    }
+}
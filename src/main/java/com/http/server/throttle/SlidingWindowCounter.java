@@ -0,0 +1,142 @@
+package com.http.server.throttle;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 近似滑动窗口计数器，内存固定、无锁。
+ * 计数存放在 Count-Min Sketch 中（DEPTH 行 × width 列的 AtomicLongArray，按键哈希分散到各条带），
+ * 键再多也只占固定内存：热点键的计数基本准确，长尾键之间的哈希碰撞只会让估计值偏大，不会偏小。
+ * 每行对键的 UTF-8 字节用不同的种子单独哈希，两个键在一行碰撞不代表在其他行也碰撞
+ * （若各行都由 String.hashCode 派生，hashCode 相同的键如 "Aa"/"BB" 会在所有行同时碰撞）。
+ * 滑动窗口用“当前窗口 + 按剩余比例加权的上一窗口”近似，两个窗口的 sketch 轮换复用。
+ */
+public class SlidingWindowCounter {
+
+    private static final int DEPTH = 4;
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+
+    private final long windowMillis;
+    private final int width;
+    private final int mask;
+    private final AtomicLongArray[] windows = new AtomicLongArray[2];
+    private final AtomicLongArray windowIds = new AtomicLongArray(2);
+
+    /**
+     * @param windowMillis 窗口长度
+     * @param width        每行的计数槽数，会向上取整为 2 的幂；内存约为 2 × 4 × width × 8 字节
+     */
+    public SlidingWindowCounter(long windowMillis, int width) {
+        this.windowMillis = windowMillis;
+        this.width = Integer.highestOneBit(Math.max(1, width - 1)) << 1;
+        this.mask = this.width - 1;
+        windows[0] = new AtomicLongArray(DEPTH * this.width);
+        windows[1] = new AtomicLongArray(DEPTH * this.width);
+        windowIds.set(0, -2);
+        windowIds.set(1, -1);
+    }
+
+    /**
+     * 计数加一，返回加一后的滑动窗口估计值
+     */
+    public long incrementAndEstimate(String key, long nowMillis) {
+        long id = nowMillis / windowMillis;
+        AtomicLongArray current = window(id);
+        int[] slots = indexes(key);
+        for (int slot : slots) {
+            current.incrementAndGet(slot);
+        }
+        return estimate(slots, id, nowMillis);
+    }
+
+    /**
+     * 滑动窗口内的估计次数（不计数）
+     */
+    public long estimate(String key, long nowMillis) {
+        return estimate(indexes(key), nowMillis / windowMillis, nowMillis);
+    }
+
+    private long estimate(int[] slots, long id, long nowMillis) {
+        long current = min(window(id), slots);
+        long previous = previousCount(id, slots);
+        double previousWeight = 1.0 - (double) (nowMillis % windowMillis) / windowMillis;
+        return current + (long) (previous * previousWeight);
+    }
+
+    /**
+     * 估计值降到 limit 以下大约还需多少毫秒（用于 Retry-After）
+     */
+    public long millisUntilBelow(String key, long limit, long nowMillis) {
+        long id = nowMillis / windowMillis;
+        long offset = nowMillis % windowMillis;
+        int[] slots = indexes(key);
+        long current = min(window(id), slots);
+        if (current >= limit) {
+            // 当前窗口本身已超限：等它成为上一窗口后，权重衰减到 current*(1-x/W) < limit
+            return windowMillis - offset + (long) Math.ceil(windowMillis * (1.0 - (double) limit / current));
+        }
+        long previous = previousCount(id, slots);
+        if (previous == 0) {
+            return 0;
+        }
+        // previous*(1-x/W) + current < limit
+        long x = (long) Math.ceil(windowMillis * (1.0 - (double) (limit - current) / previous));
+        return Math.max(0, x - offset);
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * 取窗口 id 对应的 sketch；槽位仍属于更早的窗口时由抢到 CAS 的线程清零后复用
+     */
+    private AtomicLongArray window(long id) {
+        int slot = (int) (id & 1);
+        long owner = windowIds.get(slot);
+        if (owner < id && windowIds.compareAndSet(slot, owner, id)) {
+            AtomicLongArray array = windows[slot];
+            // 清零期间并发的计数可能丢失少量，对限流可以接受
+            for (int i = 0; i < array.length(); i++) {
+                array.set(i, 0);
+            }
+        }
+        return windows[slot];
+    }
+
+    private long previousCount(long id, int[] slots) {
+        int slot = (int) ((id - 1) & 1);
+        return windowIds.get(slot) == id - 1 ? min(windows[slot], slots) : 0;
+    }
+
+    private static long min(AtomicLongArray array, int[] slots) {
+        long min = Long.MAX_VALUE;
+        for (int slot : slots) {
+            min = Math.min(min, array.get(slot));
+        }
+        return min;
+    }
+
+    /**
+     * 键在各行中的计数槽下标：每行以不同种子对 UTF-8 字节做 64 位 FNV-1a，再用 murmur3 fmix64 混合
+     */
+    private int[] indexes(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int[] slots = new int[DEPTH];
+        for (int row = 0; row < DEPTH; row++) {
+            long h = SEEDS[row];
+            for (byte b : bytes) {
+                h = (h ^ (b & 0xFF)) * 0x100000001B3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            slots[row] = row * width + (int) (h & mask);
+        }
+        return slots;
+    }
+}
@@ -0,0 +1,75 @@
+package com.http.server.throttle;
+
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个连接的整形状态：当前请求的路由、单连接桶以及共享的 IP / 全局桶。
+ * 只被所属连接线程使用；共享桶本身是无锁的。
+ */
+public class Throttle {
+
+    private final BandwidthLimiter limiter;
+    private final BandwidthLimiter.AddressBuckets address;
+    // 单连接桶按路由的速率分别创建（长连接上的不同请求可能属于不同路由）
+    private final Map<Long, TokenBucket[]> connectionBuckets = new HashMap<>();
+    private String routeKey;
+    private boolean exempt;
+    private TokenBucket[] current;
+
+    Throttle(BandwidthLimiter limiter, BandwidthLimiter.AddressBuckets address) {
+        this.limiter = limiter;
+        this.address = address;
+        setRoute(null);
+    }
+
+    /**
+     * 切换到某个路由的限速规则（null 表示尚未识别路由，例如读取请求头时）
+     */
+    public void setRoute(String routeKey) {
+        this.routeKey = routeKey;
+        this.exempt = limiter.isExempt(routeKey);
+        long rate = limiter.connectionRateFor(routeKey);
+        current = rate <= 0 ? null : connectionBuckets.computeIfAbsent(rate,
+                r -> new TokenBucket[]{BandwidthLimiter.newBucket(r), BandwidthLimiter.newBucket(r)});
+    }
+
+    public String getRoute() {
+        return routeKey;
+    }
+
+    /**
+     * 计量 bytes 字节的传输，超出额度时阻塞到可以继续
+     */
+    void acquire(boolean inbound, int bytes) throws InterruptedIOException {
+        if (exempt || bytes <= 0) {
+            return;
+        }
+        int side = inbound ? 0 : 1;
+        long delay = 0;
+        if (current != null) {
+            delay = current[side].reserve(bytes);
+        }
+        if (address != null) {
+            address.lastUsed = System.currentTimeMillis();
+            TokenBucket bucket = inbound ? address.in : address.out;
+            if (bucket != null) {
+                delay = Math.max(delay, bucket.reserve(bytes));
+            }
+        }
+        TokenBucket global = limiter.globalBucket(inbound);
+        if (global != null) {
+            delay = Math.max(delay, global.reserve(bytes));
+        }
+        if (delay > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("限速等待被中断");
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.http.server.throttle;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 按 Throttle 整形的输入流：每次最多读一个切片，读到数据后按实际字节数计量。
+ * 等待期间不读 socket，TCP 窗口会把速率反压给客户端。
+ * 逐字节读取（HttpRequest 解析请求头）不逐字节计量：先累计，满一个切片、下一次块读取前
+ * 或调用 settle 时一次性计量，一个请求头通常只计量一次。
+ */
+public class ThrottledInputStream extends FilterInputStream {
+
+    private final Throttle throttle;
+    // 已读出但尚未计量的字节数（逐字节读取累计）
+    private int unsettled;
+
+    public ThrottledInputStream(InputStream in, Throttle throttle) {
+        super(in);
+        this.throttle = throttle;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1 && ++unsettled >= BandwidthLimiter.SLICE_BYTES) {
+            settle();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        settle();
+        int read = in.read(b, off, Math.min(len, BandwidthLimiter.SLICE_BYTES));
+        if (read > 0) {
+            throttle.acquire(true, read);
+        }
+        return read;
+    }
+
+    /**
+     * 计量累计的逐字节读取（请求头解析完、切换到路由的限速规则之前调用，头部按默认规则计量）
+     */
+    public void settle() throws IOException {
+        if (unsettled > 0) {
+            int bytes = unsettled;
+            unsettled = 0;
+            throttle.acquire(true, bytes);
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // 跳过也要经过计量，否则丢弃请求体时会绕过限速
+        byte[] buffer = new byte[(int) Math.min(n, BandwidthLimiter.SLICE_BYTES)];
+        int read = buffer.length == 0 ? 0 : read(buffer, 0, buffer.length);
+        return Math.max(read, 0);
+    }
+}
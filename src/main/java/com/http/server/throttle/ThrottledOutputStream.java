@@ -0,0 +1,35 @@
+package com.http.server.throttle;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 按 Throttle 整形的输出流：大块写入被切成切片，每片先计量再写出。
+ */
+public class ThrottledOutputStream extends FilterOutputStream {
+
+    private final Throttle throttle;
+
+    public ThrottledOutputStream(OutputStream out, Throttle throttle) {
+        super(out);
+        this.throttle = throttle;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        throttle.acquire(false, 1);
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int slice = Math.min(len, BandwidthLimiter.SLICE_BYTES);
+            throttle.acquire(false, slice);
+            out.write(b, off, slice);
+            off += slice;
+            len -= slice;
+        }
+    }
+}
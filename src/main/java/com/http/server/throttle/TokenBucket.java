@@ -0,0 +1,50 @@
+package com.http.server.throttle;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶（GCRA 形式）。
+ * 只用一个 AtomicLong 记录“理论到达时间”：预约 n 字节就把它向后推 n 字节对应的时长，
+ * 超出突发容量的部分即调用方需要等待的时间。一次 CAS 完成判断和扣减，不需要后台补充令牌。
+ */
+public class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final long bytesPerSecond;
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param bytesPerSecond 平均速率（字节/秒），必须大于 0
+     * @param burstBytes     允许的突发字节数
+     */
+    public TokenBucket(long bytesPerSecond, long burstBytes) {
+        if (bytesPerSecond <= 0) {
+            throw new IllegalArgumentException("速率必须大于 0");
+        }
+        this.bytesPerSecond = bytesPerSecond;
+        this.burstNanos = burstBytes * NANOS_PER_SECOND / bytesPerSecond;
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * 预约 bytes 字节的额度，返回需要等待的纳秒数（0 表示可立即传输）
+     */
+    public long reserve(long bytes) {
+        long cost = bytes * NANOS_PER_SECOND / bytesPerSecond;
+        while (true) {
+            long now = System.nanoTime();
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, now) + cost;
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                long delay = next - now - burstNanos;
+                return delay > 0 ? delay : 0;
+            }
+        }
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+}
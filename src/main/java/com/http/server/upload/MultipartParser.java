@@ -0,0 +1,286 @@
+package com.http.server.upload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 流式 multipart/form-data 解析器。
+ * 使用固定大小的缓冲区逐段读取请求体，用 Boyer-Moore-Horspool 算法查找分隔符：
+ * 文件部分边读边交给 PartHandler 写盘，普通表单字段（有大小上限）收集为字符串，
+ * 整个请求体不会被完整缓存在内存中。
+ */
+public class MultipartParser {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_BYTES = 8 * 1024;
+    private static final int MAX_FIELD_BYTES = 64 * 1024;
+    private static final int MAX_PARTS = 1000;
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+    private final InputStream in;
+    private final byte[] delimiter; // "\r\n--" + boundary
+    private final int[] shift = new int[256];
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int start;
+    private int end;
+
+    public MultipartParser(InputStream in, String boundary) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        // Horspool 坏字符表：失配时按窗口末字节决定跳过距离
+        int m = delimiter.length;
+        for (int i = 0; i < shift.length; i++) {
+            shift[i] = m;
+        }
+        for (int i = 0; i < m - 1; i++) {
+            shift[delimiter[i] & 0xFF] = m - 1 - i;
+        }
+    }
+
+    /**
+     * 从 Content-Type 中提取 boundary，不是 multipart/form-data 时返回 null
+     */
+    public static String extractBoundary(String contentType) {
+        if (contentType == null || !contentType.toLowerCase().startsWith("multipart/form-data")) {
+            return null;
+        }
+        for (String param : contentType.split(";")) {
+            param = param.trim();
+            if (param.toLowerCase().startsWith("boundary=")) {
+                String boundary = param.substring("boundary=".length());
+                if (boundary.length() >= 2 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+                    boundary = boundary.substring(1, boundary.length() - 1);
+                }
+                // RFC 2046：boundary 长度 1~70
+                return (boundary.isEmpty() || boundary.length() > 70) ? null : boundary;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 解析整个请求体，依次回调各个部分
+     */
+    public void parse(PartHandler handler) throws IOException {
+        // 预置一个虚拟的 CRLF，使首个分隔符与后续分隔符的形式一致
+        buf[0] = '\r';
+        buf[1] = '\n';
+        start = 0;
+        end = 2;
+
+        // 跳过 preamble
+        copyToDelimiter(null, Long.MAX_VALUE);
+        int parts = 0;
+        while (true) {
+            ensure(2);
+            if (buf[start] == '-' && buf[start + 1] == '-') {
+                return; // 结束分隔符
+            }
+            if (buf[start] != '\r' || buf[start + 1] != '\n') {
+                throw new MalformedException("分隔符后缺少换行");
+            }
+            start += 2;
+            if (++parts > MAX_PARTS) {
+                throw new MalformedException("表单部分过多");
+            }
+
+            Part part = readPartHeaders();
+            if (part.getFilename() != null) {
+                OutputStream out = handler.startFile(part);
+                long size = copyToDelimiter(out, Long.MAX_VALUE);
+                handler.endFile(part, size);
+            } else {
+                ByteArrayOutputStream value = new ByteArrayOutputStream();
+                copyToDelimiter(value, MAX_FIELD_BYTES);
+                handler.field(part.getName(), new String(value.toByteArray(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * 把数据写到 out（为 null 时丢弃），直到遇到分隔符；分隔符本身被消费
+     */
+    private long copyToDelimiter(OutputStream out, long limit) throws IOException {
+        long total = 0;
+        int m = delimiter.length;
+        while (true) {
+            int idx = indexOf(start, end);
+            // 未找到时，末尾 m-1 字节可能是分隔符的前半段，需要保留
+            int safeEnd = idx >= 0 ? idx : Math.max(start, end - (m - 1));
+            int length = safeEnd - start;
+            if (length > 0) {
+                total += length;
+                if (total > limit) {
+                    throw new MalformedException("表单字段过大");
+                }
+                if (out != null) {
+                    out.write(buf, start, length);
+                }
+                start = safeEnd;
+            }
+            if (idx >= 0) {
+                start = idx + m;
+                return total;
+            }
+            if (!fill()) {
+                throw new MalformedException("请求体在结束分隔符之前中断");
+            }
+        }
+    }
+
+    /**
+     * Boyer-Moore-Horspool 查找分隔符，返回起始下标或 -1
+     */
+    private int indexOf(int from, int to) {
+        int last = delimiter.length - 1;
+        int i = from;
+        while (i + last < to) {
+            int j = last;
+            while (buf[i + j] == delimiter[j]) {
+                if (j == 0) return i;
+                j--;
+            }
+            i += shift[buf[i + last] & 0xFF];
+        }
+        return -1;
+    }
+
+    private Part readPartHeaders() throws IOException {
+        int headerEnd;
+        while ((headerEnd = indexOfHeaderEnd()) < 0) {
+            if (end - start > MAX_HEADER_BYTES) {
+                throw new MalformedException("部分头部过大");
+            }
+            if (!fill()) {
+                throw new MalformedException("部分头部不完整");
+            }
+        }
+        String headerBlock = new String(buf, start, headerEnd - start, StandardCharsets.UTF_8);
+        start = headerEnd + HEADER_END.length;
+
+        String name = null;
+        String filename = null;
+        String contentType = null;
+        for (String line : headerBlock.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) continue;
+            String key = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if ("Content-Disposition".equalsIgnoreCase(key)) {
+                name = dispositionParam(value, "name");
+                filename = dispositionParam(value, "filename");
+            } else if ("Content-Type".equalsIgnoreCase(key)) {
+                contentType = value;
+            }
+        }
+        if (name == null) {
+            throw new MalformedException("部分缺少 Content-Disposition name");
+        }
+        return new Part(name, filename, contentType);
+    }
+
+    private int indexOfHeaderEnd() {
+        // 头部最多几 KB，朴素查找即可
+        for (int i = start; i + HEADER_END.length <= end; i++) {
+            if (buf[i] == '\r' && buf[i + 1] == '\n' && buf[i + 2] == '\r' && buf[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String dispositionParam(String disposition, String param) {
+        for (String token : disposition.split(";")) {
+            token = token.trim();
+            int eq = token.indexOf('=');
+            if (eq <= 0 || !token.substring(0, eq).trim().equalsIgnoreCase(param)) continue;
+            String value = token.substring(eq + 1).trim();
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            return value;
+        }
+        return null;
+    }
+
+    private void ensure(int n) throws IOException {
+        while (end - start < n) {
+            if (!fill()) {
+                throw new MalformedException("请求体意外结束");
+            }
+        }
+    }
+
+    /**
+     * 压缩缓冲区并从输入流补充数据，流结束时返回 false
+     */
+    private boolean fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buf, start, buf, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+        if (end == buf.length) {
+            throw new MalformedException("缓冲区已满");
+        }
+        int read = in.read(buf, end, buf.length - end);
+        if (read == -1) {
+            return false;
+        }
+        end += read;
+        return true;
+    }
+
+    /**
+     * 解析过程中的回调
+     */
+    public interface PartHandler {
+        /**
+         * 文件部分开始，返回写入目标；返回 null 表示丢弃该部分内容
+         */
+        OutputStream startFile(Part part) throws IOException;
+
+        /**
+         * 文件部分结束（由实现方负责关闭 startFile 返回的流）
+         */
+        void endFile(Part part, long size) throws IOException;
+
+        /**
+         * 普通表单字段
+         */
+        void field(String name, String value);
+    }
+
+    /**
+     * 单个部分的头部信息
+     */
+    public static class Part {
+        private final String name;
+        private final String filename;
+        private final String contentType;
+
+        Part(String name, String filename, String contentType) {
+            this.name = name;
+            this.filename = filename;
+            this.contentType = contentType;
+        }
+
+        public String getName() { return name; }
+        public String getFilename() { return filename; }
+        public String getContentType() { return contentType; }
+    }
+
+    /**
+     * 请求体不符合 multipart 格式（客户端错误）
+     */
+    public static class MalformedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public MalformedException(String message) {
+            super(message);
+        }
+    }
+}
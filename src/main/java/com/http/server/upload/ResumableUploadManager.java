@@ -0,0 +1,393 @@
+package com.http.server.upload;
+
+import com.http.utils.ConsoleWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 断点续传上传会话管理。
+ * 每个会话在磁盘上有两个文件：{id}.part（已接收的数据）和 {id}.meta（已提交的偏移量等）。
+ * 数据每写入一定量就 fsync 并持久化偏移量；分片中途失败时，未提交的尾部被截掉，
+ * 客户端通过 HEAD 查询已提交的偏移量后从该位置继续，最多损失一个分片的数据。
+ * 会话目录位于 Web 根目录之外（data/uploads/sessions），会话 ID 不会经由静态文件暴露；
+ * 后台线程每小时清理一次长期无进展的会话。
+ */
+public class ResumableUploadManager {
+
+    // 每写入这么多字节做一次 fsync 并提交偏移量
+    private static final long FSYNC_INTERVAL_BYTES = 4L * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // 超过该时间没有任何进展的会话被清理（启动时一次，之后每 PURGE_INTERVAL_MILLIS 一次）
+    private static final long SESSION_MAX_AGE_MILLIS = 24L * 60 * 60 * 1000;
+    private static final long PURGE_INTERVAL_MILLIS = 60L * 60 * 1000;
+    private static final String META_SUFFIX = ".meta";
+
+    // 会话目录：不在 Web 根目录下，.meta 文件名即会话 ID，不能被静态文件处理器访问
+    public static final Path DEFAULT_SESSION_DIR = Paths.get("data", "uploads", "sessions");
+    // 旧版本放在 Web 根目录下的会话目录，启动时迁移
+    private static final Path LEGACY_SESSION_DIR = Paths.get("src", "main", "java", "web", "uploads", ".sessions");
+
+    private static ResumableUploadManager instance;
+
+    private final Path sessionDir;
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    ResumableUploadManager(Path sessionDir) {
+        this.sessionDir = sessionDir;
+        try {
+            migrateLegacyDir(sessionDir);
+            Files.createDirectories(sessionDir);
+            purgeExpired();
+        } catch (IOException e) {
+            ConsoleWriter.logError("初始化续传目录失败: " + e.getMessage());
+        }
+        ScheduledExecutorService purger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "upload-session-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        purger.scheduleWithFixedDelay(() -> {
+            try {
+                purgeExpired();
+            } catch (IOException e) {
+                ConsoleWriter.logError("清理过期续传会话失败: " + e.getMessage());
+            }
+        }, PURGE_INTERVAL_MILLIS, PURGE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized ResumableUploadManager getInstance() {
+        if (instance == null) {
+            instance = new ResumableUploadManager(DEFAULT_SESSION_DIR);
+        }
+        return instance;
+    }
+
+    /**
+     * 创建上传会话
+     * @param length 声明的总长度，未知时为 -1
+     */
+    public Session create(long length) throws IOException {
+        byte[] idBytes = new byte[16];
+        random.nextBytes(idBytes);
+        StringBuilder id = new StringBuilder(32);
+        for (byte b : idBytes) {
+            id.append(String.format("%02x", b & 0xFF));
+        }
+        Session session = new Session(id.toString(), length, 0, System.currentTimeMillis());
+        Files.createFile(dataPath(session.id));
+        writeMeta(session);
+        sessions.put(session.id, session);
+        return session;
+    }
+
+    /**
+     * 查找会话：内存中没有时从磁盘恢复（服务器重启后续传），不存在返回 null
+     */
+    public Session get(String id) throws IOException {
+        if (id == null || !id.matches("[0-9a-f]{32}")) {
+            return null;
+        }
+        Session session = sessions.get(id);
+        if (session != null) {
+            return session;
+        }
+        Path meta = metaPath(id);
+        if (!Files.exists(meta)) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(meta, StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+        try {
+            session = new Session(id,
+                    Long.parseLong(props.getProperty("length", "-1")),
+                    Long.parseLong(props.getProperty("offset", "0")),
+                    Long.parseLong(props.getProperty("created", "0")));
+        } catch (NumberFormatException e) {
+            throw new IOException("续传会话元数据损坏: " + id);
+        }
+        Session existing = sessions.putIfAbsent(id, session);
+        return existing != null ? existing : session;
+    }
+
+    /**
+     * 从 offset 处追加一个分片，返回追加后已提交的偏移量
+     */
+    public long append(Session session, long offset, InputStream in) throws IOException {
+        if (!session.lock.tryLock()) {
+            throw new OffsetConflictException("该上传正在被其他请求写入", session.offset);
+        }
+        try {
+            if (session.completed) {
+                throw new OffsetConflictException("上传已完成", session.offset);
+            }
+            if (offset != session.offset) {
+                throw new OffsetConflictException("偏移量不匹配", session.offset);
+            }
+            try (FileChannel channel = FileChannel.open(dataPath(session.id), StandardOpenOption.WRITE)) {
+                // 丢弃上次失败时残留的未提交数据
+                channel.truncate(session.offset);
+                channel.position(session.offset);
+
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long written = session.offset;
+                long sinceSync = 0;
+                try {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        if (session.length >= 0 && written + read > session.length) {
+                            throw new LengthExceededException("数据超出声明的总长度 " + session.length);
+                        }
+                        ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                        while (chunk.hasRemaining()) {
+                            channel.write(chunk);
+                        }
+                        written += read;
+                        sinceSync += read;
+                        if (sinceSync >= FSYNC_INTERVAL_BYTES) {
+                            channel.force(false);
+                            commit(session, written);
+                            sinceSync = 0;
+                        }
+                    }
+                    channel.force(false);
+                    commit(session, written);
+                } catch (IOException e) {
+                    // 分片中途失败：截回最后一次提交的位置
+                    channel.truncate(session.offset);
+                    throw e;
+                }
+            }
+            return session.offset;
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * 完成上传：校验长度后把数据文件的一个硬链接（不支持时为副本）交给 consumer（由其移走或删除），
+     * consumer 正常返回后才删除会话。consumer 抛出异常（例如未能在期限内落盘）时会话与 .part 原样保留，
+     * 客户端可以重试完成请求
+     */
+    public <T> T complete(Session session, DataConsumer<T> consumer) throws IOException {
+        if (!session.lock.tryLock()) {
+            throw new OffsetConflictException("该上传正在被其他请求写入", session.offset);
+        }
+        try {
+            if (session.completed) {
+                throw new OffsetConflictException("上传已完成", session.offset);
+            }
+            if (session.length >= 0 && session.offset != session.length) {
+                throw new OffsetConflictException("上传尚未完成", session.offset);
+            }
+            Path handoff = handoffPath(session.id);
+            Files.deleteIfExists(handoff);
+            try {
+                Files.createLink(handoff, dataPath(session.id));
+            } catch (UnsupportedOperationException | IOException e) {
+                Files.copy(dataPath(session.id), handoff, StandardCopyOption.REPLACE_EXISTING);
+            }
+            T result;
+            try {
+                result = consumer.accept(handoff);
+            } finally {
+                Files.deleteIfExists(handoff);
+            }
+            session.completed = true;
+            Files.deleteIfExists(dataPath(session.id));
+            Files.deleteIfExists(metaPath(session.id));
+            sessions.remove(session.id);
+            return result;
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * 放弃上传，删除已接收的数据
+     */
+    public void abort(Session session) throws IOException {
+        session.lock.lock();
+        try {
+            session.completed = true;
+            Files.deleteIfExists(dataPath(session.id));
+            Files.deleteIfExists(metaPath(session.id));
+            sessions.remove(session.id);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    private void commit(Session session, long offset) throws IOException {
+        session.offset = offset;
+        writeMeta(session);
+    }
+
+    /**
+     * 先写临时文件并 fsync，再原子替换，保证元数据文件任何时刻都是完整的
+     */
+    private void writeMeta(Session session) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("length", String.valueOf(session.length));
+        props.setProperty("offset", String.valueOf(session.offset));
+        props.setProperty("created", String.valueOf(session.created));
+
+        Path meta = metaPath(session.id);
+        Path tmp = sessionDir.resolve(session.id + META_SUFFIX + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            props.store(out, null);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tmp, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 清理长期无进展的会话：.meta 在每次提交偏移量时重写，其修改时间即最后一次进展的时间。
+     * 正在被写入的会话（锁被占用）跳过；没有 .meta 的残留文件按自身修改时间清理
+     */
+    void purgeExpired() throws IOException {
+        long cutoff = System.currentTimeMillis() - SESSION_MAX_AGE_MILLIS;
+        int purged = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(sessionDir)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                int dot = name.indexOf('.');
+                String id = dot > 0 ? name.substring(0, dot) : name;
+                Path meta = metaPath(id);
+                // 有 .meta 的会话只按 .meta 的时间判断，避免删掉仍在进行中的 .part
+                Path clock = Files.exists(meta) ? meta : file;
+                try {
+                    if (Files.getLastModifiedTime(clock).toMillis() >= cutoff) continue;
+                } catch (java.nio.file.NoSuchFileException e) {
+                    continue; // 同时被完成或放弃
+                }
+                Session session = sessions.get(id);
+                if (session != null) {
+                    if (!session.lock.tryLock()) continue;
+                    try {
+                        session.completed = true;
+                        sessions.remove(id, session);
+                    } finally {
+                        session.lock.unlock();
+                    }
+                }
+                // 会话的各个文件一起删除（.part 可能因中途失败而比 .meta 新）
+                Files.deleteIfExists(dataPath(id));
+                Files.deleteIfExists(handoffPath(id));
+                Files.deleteIfExists(sessionDir.resolve(id + META_SUFFIX + ".tmp"));
+                if (Files.deleteIfExists(meta)) {
+                    purged++;
+                }
+                Files.deleteIfExists(file);
+            }
+        }
+        if (purged > 0) {
+            ConsoleWriter.logServer("已清理 " + purged + " 个过期的续传会话");
+        }
+    }
+
+    /**
+     * 旧版本的会话目录在 Web 根目录下：新目录尚不存在时整体移过来，之后旧路径不再可访问
+     */
+    private static void migrateLegacyDir(Path sessionDir) throws IOException {
+        if (!Files.isDirectory(LEGACY_SESSION_DIR) || Files.exists(sessionDir)) return;
+        Files.createDirectories(sessionDir.toAbsolutePath().getParent());
+        Files.move(LEGACY_SESSION_DIR, sessionDir);
+        ConsoleWriter.logServer("续传会话目录已迁移: " + LEGACY_SESSION_DIR + " -> " + sessionDir);
+    }
+
+    private Path dataPath(String id) {
+        return sessionDir.resolve(id + ".part");
+    }
+
+    // 完成时交给 consumer 的 .part 链接，consumer 失败时 .part 本身不受影响
+    private Path handoffPath(String id) {
+        return sessionDir.resolve(id + ".import");
+    }
+
+    private Path metaPath(String id) {
+        return sessionDir.resolve(id + META_SUFFIX);
+    }
+
+    /**
+     * 一个上传会话
+     */
+    public static class Session {
+        private final String id;
+        private final long length;
+        private final long created;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long offset;
+        private volatile boolean completed;
+
+        Session(String id, long length, long offset, long created) {
+            this.id = id;
+            this.length = length;
+            this.offset = offset;
+            this.created = created;
+        }
+
+        public String getId() { return id; }
+        public long getLength() { return length; }
+        public long getOffset() { return offset; }
+    }
+
+    /**
+     * 接收完成后的数据文件（例如导入上传存储）
+     */
+    public interface DataConsumer<T> {
+        T accept(Path data) throws IOException;
+    }
+
+    /**
+     * 偏移量冲突：客户端应先 HEAD 查询当前偏移量
+     */
+    public static class OffsetConflictException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final long currentOffset;
+
+        public OffsetConflictException(String message, long currentOffset) {
+            super(message);
+            this.currentOffset = currentOffset;
+        }
+
+        public long getCurrentOffset() { return currentOffset; }
+    }
+
+    /**
+     * 写入的数据超过了创建会话时声明的总长度
+     */
+    public static class LengthExceededException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public LengthExceededException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.http.server.upload;
+
+import com.http.utils.ConsoleWriter;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 上传的持久化阶段：有界的 write-behind 队列 + 专用 I/O 线程。
+ * I/O 线程每次取出一批待刷盘的文件，逐个 fsync 后对所在目录和上传索引只做一次 fsync（组提交），
+ * 请求线程按配置的持久化级别决定是否等待：
+ *   NONE  —— 写入页缓存即确认，不做 fsync；
+ *   ASYNC —— 立即确认，fsync 由后台批量完成（队列满时跳过并计数）；
+ *   FSYNC —— 等到所在批次 fsync 完成才确认。
+ */
+public class UploadPersister {
+
+    public enum Durability { NONE, ASYNC, FSYNC }
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int MAX_BATCH = 64;
+    private static final long OFFER_TIMEOUT_MILLIS = 2_000;
+    private static final long SYNC_TIMEOUT_MILLIS = 10_000;
+
+    private static Durability configuredDurability = Durability.FSYNC;
+    private static int configuredThreads = 2;
+    private static UploadPersister instance;
+
+    private final Durability durability;
+    private final BlockingQueue<Task> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong syncedFiles = new AtomicLong();
+    private final AtomicLong skippedSyncs = new AtomicLong();
+
+    private UploadPersister(Durability durability, int threads) {
+        this.durability = durability;
+        if (durability == Durability.NONE) return;
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(this::drainLoop, "upload-io-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * 设置持久化级别和 I/O 线程数，需在第一次上传之前调用
+     */
+    public static synchronized void configure(Durability durability, int ioThreads) {
+        configuredDurability = durability;
+        configuredThreads = Math.max(1, ioThreads);
+    }
+
+    public static synchronized UploadPersister getInstance() {
+        if (instance == null) {
+            instance = new UploadPersister(configuredDurability, configuredThreads);
+        }
+        return instance;
+    }
+
+    /**
+     * 已创建的实例，尚未创建时返回 null（不触发创建，供管理端口的探测使用）
+     */
+    public static synchronized UploadPersister peekInstance() {
+        return instance;
+    }
+
+    /**
+     * 按持久化级别处理已登记到存储中的文件；FSYNC 级别下返回时这些文件及索引已落盘。
+     * 抛出异常时不撤销登记，由调用方决定（上传处理器会释放这些上传）
+     */
+    public void persist(UploadStore store, List<Path> files) throws IOException {
+        if (durability == Durability.NONE || files.isEmpty()) {
+            return;
+        }
+
+        List<CompletableFuture<Void>> pending = new ArrayList<>(files.size());
+        for (Path file : files) {
+            Task task = new Task(store, file);
+            boolean queued;
+            try {
+                queued = durability == Durability.FSYNC
+                        ? queue.offer(task, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                        : queue.offer(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DurabilityTimeoutException("等待持久化队列时被中断");
+            }
+            if (!queued) {
+                if (durability == Durability.FSYNC) {
+                    throw new DurabilityTimeoutException("持久化队列已满");
+                }
+                skippedSyncs.incrementAndGet(); // ASYNC：交给操作系统自行回写
+                continue;
+            }
+            pending.add(task.done);
+        }
+
+        if (durability != Durability.FSYNC) {
+            return;
+        }
+        try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0]))
+                    .get(SYNC_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new DurabilityTimeoutException("等待 fsync 超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DurabilityTimeoutException("等待 fsync 时被中断");
+        } catch (ExecutionException e) {
+            throw new IOException("fsync 失败: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void drainLoop() {
+        List<Task> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                syncBatch(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                ConsoleWriter.logError("上传持久化线程异常: " + e.getMessage());
+                for (Task task : batch) {
+                    task.done.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 组提交：逐个 fsync 数据文件，再对涉及的目录和索引各 fsync 一次
+     */
+    private void syncBatch(List<Task> batch) {
+        Set<Path> dirs = new LinkedHashSet<>();
+        Set<UploadStore> stores = new LinkedHashSet<>();
+        List<Task> synced = new ArrayList<>(batch.size());
+        for (Task task : batch) {
+            try (FileChannel channel = FileChannel.open(task.file, StandardOpenOption.READ)) {
+                channel.force(true);
+                dirs.add(task.file.getParent());
+                stores.add(task.store);
+                synced.add(task);
+            } catch (IOException e) {
+                task.done.completeExceptionally(e);
+            }
+        }
+        for (Path dir : dirs) {
+            // 目录 fsync 使 rename 落盘；部分平台（Windows）不支持，忽略即可
+            try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+                channel.force(true);
+            } catch (IOException ignored) {
+            }
+        }
+        IOException indexError = null;
+        for (UploadStore store : stores) {
+            try {
+                store.syncIndex();
+            } catch (IOException e) {
+                indexError = e;
+            }
+        }
+        for (Task task : synced) {
+            if (indexError != null) {
+                task.done.completeExceptionally(indexError);
+            } else {
+                task.done.complete(null);
+            }
+        }
+        batches.incrementAndGet();
+        syncedFiles.addAndGet(synced.size());
+    }
+
+    public Durability getDurability() { return durability; }
+    public int getQueueDepth() { return queue.size(); }
+    public int getQueueCapacity() { return QUEUE_CAPACITY; }
+    public long getBatches() { return batches.get(); }
+    public long getSyncedFiles() { return syncedFiles.get(); }
+    public long getSkippedSyncs() { return skippedSyncs.get(); }
+
+    private static class Task {
+        private final UploadStore store;
+        private final Path file;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        Task(UploadStore store, Path file) {
+            this.store = store;
+            this.file = file;
+        }
+    }
+
+    /**
+     * 未能在限定时间内达到要求的持久化级别（数据已写入，但尚未确认落盘；上传处理器随后撤销该上传）
+     */
+    public static class DurabilityTimeoutException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public DurabilityTimeoutException(String message) {
+            super(message);
+        }
+    }
+}
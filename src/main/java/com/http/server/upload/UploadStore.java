@@ -0,0 +1,415 @@
+package com.http.server.upload;
+
+import com.http.utils.ConsoleWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按内容寻址的去重上传存储。
+ * 上传数据边写临时文件边计算 SHA-256，完成后以摘要为名存放在分片目录 objects/ab/cd/&lt;digest&gt; 中，
+ * 相同内容只保存一份。上传 ID 到摘要的映射记录在追加写的 index.log 中，
+ * 每个摘要维护引用计数，最后一个引用释放时删除数据文件。
+ * 索引中已失效的记录（被释放的上传及其删除记录）超过存活记录数时，把存活记录重写成新的索引文件并原子替换。
+ * 存储根目录位于 Web 根目录之外（data/uploads/store），索引与数据文件只能经由 /api/files 访问。
+ * 每个上传登记时生成一个随机删除令牌，只在上传响应中返回一次；索引中只保存其 SHA-256，
+ * 删除时必须出示该令牌。
+ */
+public class UploadStore {
+
+    public static final Path DEFAULT_ROOT = Paths.get("data", "uploads", "store");
+    // 旧版本放在 Web 根目录下的存储，启动时迁移
+    private static final Path LEGACY_ROOT = Paths.get("src", "main", "java", "web", "uploads", "store");
+    private static final int DELETE_TOKEN_BYTES = 16;
+    // 索引行数超过存活记录数的两倍且至少这么多行时压缩
+    private static final int COMPACT_MIN_LINES = 1024;
+
+    private static UploadStore instance;
+
+    private final Path objectsDir;
+    private final Path tmpDir;
+    private final Path indexFile;
+    private final SecureRandom random = new SecureRandom();
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Integer> refCounts = new HashMap<>(); // 受 this 锁保护
+    private FileOutputStream indexOut;
+    private Writer indexWriter;
+    private int indexLines; // 索引文件当前的行数，受 this 锁保护
+
+    UploadStore(Path root) throws IOException {
+        this.objectsDir = root.resolve("objects");
+        this.tmpDir = root.resolve("tmp");
+        this.indexFile = root.resolve("index.log");
+        Files.createDirectories(objectsDir);
+        Files.createDirectories(tmpDir);
+        // 上次运行中断时残留的临时文件不会再被登记，直接清理
+        File[] stale = tmpDir.toFile().listFiles();
+        if (stale != null) {
+            for (File file : stale) {
+                file.delete();
+            }
+        }
+        loadIndex();
+        if (needsCompaction()) {
+            compactIndex();
+        } else {
+            openIndex();
+        }
+    }
+
+    public static synchronized UploadStore getInstance() {
+        if (instance == null) {
+            try {
+                migrateLegacyRoot(DEFAULT_ROOT);
+                instance = new UploadStore(DEFAULT_ROOT);
+            } catch (IOException e) {
+                throw new IllegalStateException("初始化上传存储失败: " + e.getMessage(), e);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 旧版本的存储在 Web 根目录下（index.log 与数据文件可被直接下载）：新目录尚不存在时整体移过来
+     */
+    private static void migrateLegacyRoot(Path root) throws IOException {
+        if (!Files.isDirectory(LEGACY_ROOT) || Files.exists(root)) return;
+        Files.createDirectories(root.toAbsolutePath().getParent());
+        Files.move(LEGACY_ROOT, root);
+        ConsoleWriter.logServer("上传存储已迁移: " + LEGACY_ROOT + " -> " + root);
+    }
+
+    /**
+     * 新建一个写入器：写入的数据进入临时文件并同时计算摘要
+     */
+    public PendingUpload newUpload() throws IOException {
+        File tmp = File.createTempFile("blob_", ".tmp", tmpDir.toFile());
+        return new PendingUpload(tmp);
+    }
+
+    /**
+     * 导入一个已在磁盘上的文件（例如断点续传完成的数据），导入后原文件被移走或删除
+     */
+    public Entry importFile(Path file, String extension) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        long size = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                size += read;
+            }
+        }
+        return commit(file, toHex(digest.digest()), size, extension);
+    }
+
+    public Entry get(String id) {
+        return id == null ? null : entries.get(id);
+    }
+
+    public Path blobPath(Entry entry) {
+        return objectPath(entry.digest);
+    }
+
+    /**
+     * 释放一个上传 ID；对应内容不再被引用时删除数据文件（调用方负责校验删除令牌）
+     */
+    public synchronized boolean release(String id) throws IOException {
+        Entry entry = entries.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        appendIndex("-\t" + id);
+        if (decrement(entry.digest) == 0) {
+            Files.deleteIfExists(objectPath(entry.digest));
+        }
+        return true;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * 把索引文件刷到磁盘（由持久化线程在一批上传之后统一调用）
+     */
+    public synchronized void syncIndex() throws IOException {
+        indexWriter.flush();
+        indexOut.getFD().sync();
+    }
+
+    /**
+     * 把临时文件登记为一个新的上传：内容已存在时直接丢弃临时文件（去重），否则原子移动到位
+     */
+    private synchronized Entry commit(Path tmp, String digest, long size, String extension) throws IOException {
+        Path target = objectPath(digest);
+        if (refCounts.containsKey(digest) && Files.exists(target)) {
+            Files.deleteIfExists(tmp);
+        } else {
+            Files.createDirectories(target.getParent());
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        String id = newId();
+        String deleteToken = newToken(DELETE_TOKEN_BYTES);
+        String tokenHash = toHex(newDigest().digest(deleteToken.getBytes(StandardCharsets.US_ASCII)));
+        Entry entry = new Entry(id, digest, size, extension, refCounts.containsKey(digest), tokenHash);
+        entries.put(id, entry);
+        refCounts.merge(digest, 1, Integer::sum);
+        appendIndex("+\t" + id + "\t" + digest + "\t" + size + "\t" + extension + "\t" + tokenHash);
+        entry.deleteToken = deleteToken;
+        return entry;
+    }
+
+    private int decrement(String digest) {
+        Integer count = refCounts.get(digest);
+        if (count == null || count <= 1) {
+            refCounts.remove(digest);
+            return 0;
+        }
+        refCounts.put(digest, count - 1);
+        return count - 1;
+    }
+
+    private void appendIndex(String line) throws IOException {
+        indexWriter.write(line);
+        indexWriter.write('\n');
+        indexWriter.flush();
+        indexLines++;
+        if (needsCompaction()) {
+            compactIndex();
+        }
+    }
+
+    private boolean needsCompaction() {
+        return indexLines >= COMPACT_MIN_LINES && indexLines > 2L * entries.size();
+    }
+
+    private void openIndex() throws IOException {
+        indexOut = new FileOutputStream(indexFile.toFile(), true);
+        indexWriter = new java.io.OutputStreamWriter(indexOut, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 把存活记录写入临时文件并刷盘，再原子替换 index.log；替换前崩溃时旧索引保持完整
+     */
+    private void compactIndex() throws IOException {
+        Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        int lines = 0;
+        try (FileOutputStream out = new FileOutputStream(tmp.toFile());
+             Writer writer = new BufferedWriter(new java.io.OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (Entry entry : entries.values()) {
+                writer.write("+\t" + entry.id + "\t" + entry.digest + "\t" + entry.size + "\t" + entry.extension
+                        + (entry.deleteTokenHash != null ? "\t" + entry.deleteTokenHash : ""));
+                writer.write('\n');
+                lines++;
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        if (indexWriter != null) {
+            indexWriter.close();
+        }
+        try {
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(indexFile.getParent());
+            ConsoleWriter.logServer("上传索引已压缩: " + indexLines + " 行 -> " + lines + " 行");
+            indexLines = lines;
+        } finally {
+            // 替换失败时继续追加到旧索引
+            openIndex();
+        }
+    }
+
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // 部分平台（Windows）不支持目录 fsync，忽略即可
+        }
+    }
+
+    private void loadIndex() throws IOException {
+        if (!Files.exists(indexFile)) return;
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                indexLines++;
+                String[] parts = line.split("\t");
+                // 旧版本的记录没有删除令牌（第 6 列），这些上传无法再通过接口删除
+                if ((parts.length == 5 || parts.length == 6) && "+".equals(parts[0])) {
+                    try {
+                        entries.put(parts[1], new Entry(parts[1], parts[2], Long.parseLong(parts[3]), parts[4], false,
+                                parts.length == 6 ? parts[5] : null));
+                    } catch (NumberFormatException e) {
+                        ConsoleWriter.logError("上传索引记录损坏，已跳过: " + line);
+                    }
+                } else if (parts.length == 2 && "-".equals(parts[0])) {
+                    entries.remove(parts[1]);
+                }
+            }
+        }
+        for (Entry entry : entries.values()) {
+            refCounts.merge(entry.digest, 1, Integer::sum);
+        }
+    }
+
+    private Path objectPath(String digest) {
+        return objectsDir.resolve(digest.substring(0, 2)).resolve(digest.substring(2, 4)).resolve(digest);
+    }
+
+    private String newId() {
+        return newToken(12);
+    }
+
+    private String newToken(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return toHex(bytes);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JDK 不支持 SHA-256", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = "0123456789abcdef".toCharArray();
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[i * 2] = hex[(bytes[i] >> 4) & 0xF];
+            out[i * 2 + 1] = hex[bytes[i] & 0xF];
+        }
+        return new String(out);
+    }
+
+    /**
+     * 正在写入的上传：作为 OutputStream 使用，写完后 commit 登记，失败时 abort
+     */
+    public class PendingUpload extends OutputStream {
+        private final File tmp;
+        private final OutputStream out;
+        private final MessageDigest digest = newDigest();
+        private long size;
+        private boolean closed;
+
+        PendingUpload(File tmp) throws IOException {
+            this.tmp = tmp;
+            this.out = new FileOutputStream(tmp);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            digest.update((byte) b);
+            size++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            digest.update(b, off, len);
+            size += len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                out.close();
+            }
+        }
+
+        /**
+         * 已写入的临时文件（commit 前可用于嗅探内容类型）
+         */
+        public File getTempFile() {
+            return tmp;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public Entry commit(String extension) throws IOException {
+            close();
+            return UploadStore.this.commit(tmp.toPath(), toHex(digest.digest()), size, extension);
+        }
+
+        public void abort() {
+            try {
+                close();
+            } catch (IOException ignored) {
+                // 临时文件随后删除
+            }
+            tmp.delete();
+        }
+    }
+
+    /**
+     * 一个上传记录
+     */
+    public static class Entry {
+        private final String id;
+        private final String digest;
+        private final long size;
+        private final String extension;
+        private final boolean deduplicated;
+        private final String deleteTokenHash;
+        // 明文删除令牌，只在刚登记时的返回值上有值（不保存在内存索引或磁盘中）
+        private String deleteToken;
+
+        Entry(String id, String digest, long size, String extension, boolean deduplicated, String deleteTokenHash) {
+            this.id = id;
+            this.digest = digest;
+            this.size = size;
+            this.extension = extension;
+            this.deduplicated = deduplicated;
+            this.deleteTokenHash = deleteTokenHash;
+        }
+
+        /**
+         * 校验删除令牌（常量时间比较）；旧记录没有令牌，一律不匹配
+         */
+        public boolean matchesDeleteToken(String token) {
+            if (deleteTokenHash == null || token == null) return false;
+            byte[] actual = toHex(newDigest().digest(token.getBytes(StandardCharsets.UTF_8)))
+                    .getBytes(StandardCharsets.US_ASCII);
+            return MessageDigest.isEqual(actual, deleteTokenHash.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        public String getId() { return id; }
+        public String getDigest() { return digest; }
+        public long getSize() { return size; }
+        public String getExtension() { return extension; }
+        public String getFilename() { return id + extension; }
+        /** 内容在存储中已存在，本次上传没有占用额外磁盘 */
+        public boolean isDeduplicated() { return deduplicated; }
+        /** 删除令牌，只在本次登记返回的记录上可用，其他情况为 null */
+        public String getDeleteToken() { return deleteToken; }
+    }
+}
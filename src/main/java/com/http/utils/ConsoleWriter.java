@@ -1,26 +1,84 @@
 package com.http.utils;
 
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * 用于统一管理控制台输出的工具类。
  * 提供带格式前缀的日志记录方法，以区分客户端、服务端和错误信息。
+ * 默认同步输出（客户端的提示符与输出需要严格有序）；服务器启动时调用 configure 开启异步模式：
+ * 日志行写入无锁环形缓冲区，由单个后台线程成批写到 stdout/stderr，工作线程不再竞争 PrintStream 的锁。
+ * 缓冲区为空时后台线程挂起（park），由把缓冲区从空变为非空的生产者唤醒，空闲时不占 CPU。
+ * 缓冲区满时丢弃新日志并计数，之后由后台线程补一条丢弃数量的提示。
  */
 public class ConsoleWriter {
 
+    /**
+     * 服务端日志级别，低于当前级别的日志直接丢弃（不进入缓冲区）
+     */
+    public enum Level {
+        REQUEST, // 每个连接、每个请求都会产生的日志
+        INFO,
+        ERROR,
+        OFF
+    }
+
     private static final String SERVER_PREFIX = "[SERVER] ";
     private static final String CLIENT_PREFIX = "[CLIENT] ";
     private static final String ERROR_PREFIX = "[ERROR] ";
     private static final String PROMPT = "> ";
 
+    private static final int RING_SIZE = 8192;
+    private static final int BATCH_LIMIT = 512;
+
+    private static volatile Level level = Level.REQUEST;
+    private static volatile Ring ring;
+
+    /**
+     * 设置服务端日志级别，async 为 true 时切换为异步输出（只能开启一次，进程退出前自动写完缓冲区）
+     */
+    public static synchronized void configure(Level level, boolean async) {
+        ConsoleWriter.level = level;
+        if (async && ring == null) {
+            Ring created = new Ring(RING_SIZE);
+            Thread drainer = new Thread(created::drainLoop, "console-writer");
+            drainer.setDaemon(true);
+            created.consumer = drainer;
+            drainer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(created::drainRemaining, "console-writer-flush"));
+            ring = created;
+        }
+    }
+
+    public static Level getLevel() { return level; }
+
+    /**
+     * 因缓冲区已满而丢弃的日志条数
+     */
+    public static long getDropped() {
+        Ring current = ring;
+        return current == null ? 0 : current.dropped.get();
+    }
+
+    /**
+     * 打印每个请求都会产生的服务端日志（连接、请求、响应、关闭），生产环境可通过级别关闭。
+     * @param message 要打印的消息。
+     */
+    public static void logRequest(String message) {
+        write(Level.REQUEST, SERVER_PREFIX, message, false);
+    }
+
     /**
      * 打印服务端日志信息。
      * @param message 要打印的消息。
      */
     public static void logServer(String message) {
-        System.out.println(SERVER_PREFIX + message);
+        write(Level.INFO, SERVER_PREFIX, message, false);
     }
 
     /**
-     * 打印客户端日志信息。
+     * 打印客户端日志信息（始终同步输出）。
      * @param message 要打印的消息。
      */
     public static void logClient(String message) {
@@ -32,7 +90,7 @@ public class ConsoleWriter {
      * @param message 要打印的错误消息。
      */
     public static void logError(String message) {
-        System.err.println(ERROR_PREFIX + message);
+        write(Level.ERROR, ERROR_PREFIX, message, true);
     }
 
     /**
@@ -41,4 +99,151 @@ public class ConsoleWriter {
     public static void prompt() {
         System.out.print(PROMPT);
     }
+
+    private static void write(Level messageLevel, String prefix, String message, boolean error) {
+        if (messageLevel.ordinal() < level.ordinal()) {
+            return;
+        }
+        Ring current = ring;
+        if (current == null) {
+            (error ? System.err : System.out).println(prefix + message);
+        } else {
+            current.offer(prefix + message, error);
+        }
+    }
+
+    /**
+     * 多生产者、单消费者的有界环形缓冲区（每个槽位带序号，生产者以一次 CAS 占位）
+     */
+    private static final class Ring {
+
+        private final Slot[] slots;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private long head;            // 仅消费者线程访问
+        private long reportedDropped; // 仅消费者线程访问
+        private Thread consumer;
+        // 消费者已挂起或即将挂起：发布日志的生产者负责唤醒它
+        private volatile boolean parked;
+
+        Ring(int size) {
+            slots = new Slot[size];
+            for (int i = 0; i < size; i++) {
+                slots[i] = new Slot(i);
+            }
+            mask = size - 1;
+        }
+
+        void offer(String line, boolean error) {
+            long pos = tail.get();
+            while (true) {
+                Slot slot = slots[(int) (pos & mask)];
+                long diff = slot.sequence - pos;
+                if (diff == 0) {
+                    if (tail.compareAndSet(pos, pos + 1)) {
+                        slot.line = line;
+                        slot.error = error;
+                        slot.sequence = pos + 1; // 发布给消费者
+                        wakeConsumer();
+                        return;
+                    }
+                    pos = tail.get();
+                } else if (diff < 0) {
+                    dropped.incrementAndGet(); // 缓冲区已满：丢弃，不阻塞工作线程
+                    wakeConsumer();
+                    return;
+                } else {
+                    pos = tail.get();
+                }
+            }
+        }
+
+        /**
+         * 消费者醒着时只是一次 volatile 读；只有发现它已挂起的生产者（通常是把缓冲区从空变为非空的那个）才 unpark
+         */
+        private void wakeConsumer() {
+            if (parked) {
+                parked = false;
+                LockSupport.unpark(consumer);
+            }
+        }
+
+        void drainLoop() {
+            StringBuilder out = new StringBuilder(8192);
+            StringBuilder err = new StringBuilder(1024);
+            while (true) {
+                if (drainBatch(out, err) > 0) {
+                    continue;
+                }
+                // 先声明要挂起再复查：生产者先发布后读 parked，二者至少有一方看到对方的写入，不会漏唤醒
+                parked = true;
+                if (isEmpty()) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+            }
+        }
+
+        private boolean isEmpty() {
+            return slots[(int) (head & mask)].sequence != head + 1 && dropped.get() == reportedDropped;
+        }
+
+        /**
+         * 进程退出时把剩余日志写完
+         */
+        void drainRemaining() {
+            StringBuilder out = new StringBuilder(8192);
+            StringBuilder err = new StringBuilder(1024);
+            synchronized (this) {
+                while (drainBatch(out, err) > 0) {
+                    // 继续
+                }
+            }
+        }
+
+        /**
+         * 取出最多 BATCH_LIMIT 条日志，合并为每个流一次 write，返回取出的条数
+         */
+        private synchronized int drainBatch(StringBuilder out, StringBuilder err) {
+            int count = 0;
+            while (count < BATCH_LIMIT) {
+                Slot slot = slots[(int) (head & mask)];
+                if (slot.sequence != head + 1) {
+                    break;
+                }
+                (slot.error ? err : out).append(slot.line).append(System.lineSeparator());
+                slot.line = null;
+                slot.sequence = head + slots.length; // 槽位交还给生产者
+                head++;
+                count++;
+            }
+            long totalDropped = dropped.get();
+            if (totalDropped != reportedDropped) {
+                err.append(ERROR_PREFIX).append("日志缓冲区已满，丢弃 ").append(totalDropped - reportedDropped)
+                        .append(" 条日志").append(System.lineSeparator());
+                reportedDropped = totalDropped;
+            }
+            flush(System.out, out);
+            flush(System.err, err);
+            return count;
+        }
+
+        private static void flush(PrintStream stream, StringBuilder buffer) {
+            if (buffer.length() == 0) return;
+            stream.print(buffer);
+            stream.flush();
+            buffer.setLength(0);
+        }
+    }
+
+    private static final class Slot {
+        volatile long sequence;
+        String line;
+        boolean error;
+
+        Slot(long sequence) {
+            this.sequence = sequence;
+        }
+    }
 }
@@ -0,0 +1,125 @@
+package com.http.utils;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 哈希时间轮：固定数量的槽位按 tick 轮转，到期任务挂在“到期时刻 mod 槽数”的槽上，
+ * 超出一圈的任务记录剩余圈数。每个 tick 只处理当前槽，代价与到期数量成正比，而不是全表扫描。
+ * 任何线程都可以 schedule（先进入无锁的待加入队列），槽位只由内部的单个 tick 线程访问。
+ * 到期精度为一个 tick，适合会话过期这类不要求精确定时的场景。
+ */
+public class HashedTimingWheel<T> {
+
+    private final long tickNanos;
+    private final Queue<Timeout<T>>[] wheel;
+    private final int mask;
+    private final Consumer<T> onExpire;
+    private final ConcurrentLinkedQueue<Timeout<T>> pending = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    private long tick; // 仅 tick 线程访问
+
+    /**
+     * @param tickDuration 每个槽位代表的时长
+     * @param slots        槽位数，会向上取整为 2 的幂
+     * @param onExpire     到期回调，在 tick 线程中执行，应尽量轻量
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HashedTimingWheel(long tickDuration, TimeUnit unit, int slots, Consumer<T> onExpire, String threadName) {
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.wheel = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        this.mask = size - 1;
+        this.onExpire = onExpire;
+
+        Thread worker = new Thread(this::run, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * 安排 item 在 delay 之后到期，返回句柄（可 cancel）
+     */
+    public Timeout<T> schedule(T item, long delay, TimeUnit unit) {
+        long deadline = System.nanoTime() - startNanos + unit.toNanos(delay);
+        Timeout<T> timeout = new Timeout<>(item, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    private void run() {
+        while (true) {
+            long target = (tick + 1) * tickNanos;
+            long sleep = target - (System.nanoTime() - startNanos);
+            if (sleep > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                continue;
+            }
+            transferPending();
+            expire(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferPending() {
+        Timeout<T> timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) continue;
+            long ticks = Math.max(timeout.deadline / tickNanos, tick); // 已过期的放进当前槽
+            timeout.remainingRounds = (ticks - tick) / wheel.length;
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Queue<Timeout<T>> slot) {
+        Iterator<Timeout<T>> it = slot.iterator();
+        while (it.hasNext()) {
+            Timeout<T> timeout = it.next();
+            if (timeout.cancelled) {
+                it.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                it.remove();
+                try {
+                    onExpire.accept(timeout.item);
+                } catch (RuntimeException e) {
+                    ConsoleWriter.logError("时间轮回调异常: " + e.getMessage());
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    /**
+     * 一个已安排的到期任务
+     */
+    public static class Timeout<T> {
+        private final T item;
+        private final long deadline;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        Timeout(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        /**
+         * 取消后不会触发回调，槽位中的条目在轮到时顺带清除
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
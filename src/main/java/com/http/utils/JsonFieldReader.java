@@ -0,0 +1,236 @@
+package com.http.utils;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 从 JSON 请求体的字节中一次扫描提取若干个顶层字符串字段，不用正则、不先解码成整个字符串。
+ * 字段名在构造时编码为 UTF-8 字节，解析时直接按字节比较；其余字段（包括嵌套对象和数组）只跳过不解析。
+ * 字符串值按 JSON 规范处理转义（\" \\ \/ \b \f \n \r \t 以及 \\uXXXX 代理对）。
+ * 实例无状态，可在多个线程间共享。
+ */
+public class JsonFieldReader {
+
+    private final String[] names;
+    private final byte[][] nameBytes;
+
+    public JsonFieldReader(String... names) {
+        this.names = names.clone();
+        this.nameBytes = new byte[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            nameBytes[i] = names[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 提取字段值，结果下标与构造时的字段名一一对应；
+     * 字段不存在、不是字符串或请求体不是合法的 JSON 对象时对应位置为 null
+     */
+    public String[] read(byte[] body) {
+        String[] values = new String[names.length];
+        if (body == null) return values;
+        try {
+            parseObject(body, values);
+        } catch (MalformedJsonException | ArrayIndexOutOfBoundsException e) {
+            // 格式错误：按“字段缺失”处理，由调用方返回 400
+            return new String[names.length];
+        }
+        return values;
+    }
+
+    private void parseObject(byte[] b, String[] values) {
+        int pos = skipWhitespace(b, 0);
+        expect(b, pos, '{');
+        pos = skipWhitespace(b, pos + 1);
+        if (b[pos] == '}') return;
+        while (true) {
+            expect(b, pos, '"');
+            int keyStart = pos + 1;
+            int keyEnd = findStringEnd(b, keyStart);
+            int field = matchName(b, keyStart, keyEnd);
+            pos = skipWhitespace(b, keyEnd + 1);
+            expect(b, pos, ':');
+            pos = skipWhitespace(b, pos + 1);
+
+            if (field >= 0 && b[pos] == '"') {
+                int valueEnd = findStringEnd(b, pos + 1);
+                values[field] = decodeString(b, pos + 1, valueEnd);
+                pos = valueEnd + 1;
+            } else {
+                if (field >= 0) {
+                    values[field] = null; // 同名字段后出现的非字符串值覆盖前值
+                }
+                pos = skipValue(b, pos);
+            }
+
+            pos = skipWhitespace(b, pos);
+            if (b[pos] == ',') {
+                pos = skipWhitespace(b, pos + 1);
+            } else if (b[pos] == '}') {
+                return;
+            } else {
+                throw new MalformedJsonException();
+            }
+        }
+    }
+
+    /**
+     * 返回与 [start, end) 的字段名匹配的下标，没有匹配返回 -1
+     */
+    private int matchName(byte[] b, int start, int end) {
+        boolean escaped = false;
+        for (int i = start; i < end; i++) {
+            if (b[i] == '\\') {
+                escaped = true;
+                break;
+            }
+        }
+        if (escaped) {
+            // 少见情况：字段名里有转义，解码后再比较
+            String key = decodeString(b, start, end);
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(key)) return i;
+            }
+            return -1;
+        }
+        int length = end - start;
+        outer:
+        for (int i = 0; i < nameBytes.length; i++) {
+            byte[] name = nameBytes[i];
+            if (name.length != length) continue;
+            for (int j = 0; j < length; j++) {
+                if (name[j] != b[start + j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 从字符串内容起点找到结束引号的位置
+     */
+    private static int findStringEnd(byte[] b, int pos) {
+        while (true) {
+            byte c = b[pos];
+            if (c == '"') return pos;
+            if (c == '\\') {
+                pos += 2;
+            } else {
+                if (c >= 0 && c < 0x20) throw new MalformedJsonException(); // 未转义的控制字符
+                pos++;
+            }
+        }
+    }
+
+    private static String decodeString(byte[] b, int start, int end) {
+        int firstEscape = -1;
+        for (int i = start; i < end; i++) {
+            if (b[i] == '\\') {
+                firstEscape = i;
+                break;
+            }
+        }
+        if (firstEscape < 0) {
+            return new String(b, start, end - start, StandardCharsets.UTF_8);
+        }
+
+        StringBuilder sb = new StringBuilder(end - start);
+        sb.append(new String(b, start, firstEscape - start, StandardCharsets.UTF_8));
+        int pos = firstEscape;
+        while (pos < end) {
+            int next = pos;
+            while (next < end && b[next] != '\\') next++;
+            if (next > pos) {
+                sb.append(new String(b, pos, next - pos, StandardCharsets.UTF_8));
+                pos = next;
+                continue;
+            }
+            byte esc = b[pos + 1];
+            switch (esc) {
+                case '"': sb.append('"'); break;
+                case '\\': sb.append('\\'); break;
+                case '/': sb.append('/'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (pos + 6 > end) throw new MalformedJsonException();
+                    sb.append((char) parseHex(b, pos + 2)); // 代理对由两个 \\u 依次追加，自然组合
+                    pos += 6;
+                    continue;
+                default:
+                    throw new MalformedJsonException();
+            }
+            pos += 2;
+        }
+        return sb.toString();
+    }
+
+    private static int parseHex(byte[] b, int pos) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(b[pos + i], 16);
+            if (digit < 0) throw new MalformedJsonException();
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * 跳过任意 JSON 值，返回其后的位置
+     */
+    private static int skipValue(byte[] b, int pos) {
+        byte c = b[pos];
+        if (c == '"') {
+            return findStringEnd(b, pos + 1) + 1;
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            while (true) {
+                c = b[pos];
+                if (c == '"') {
+                    pos = findStringEnd(b, pos + 1) + 1;
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    if (--depth == 0) return pos + 1;
+                }
+                pos++;
+            }
+        }
+        // 数字、true、false、null
+        int start = pos;
+        while (pos < b.length && b[pos] != ',' && b[pos] != '}' && b[pos] != ']'
+                && b[pos] != ' ' && b[pos] != '\t' && b[pos] != '\r' && b[pos] != '\n') {
+            pos++;
+        }
+        if (pos == start) throw new MalformedJsonException();
+        return pos;
+    }
+
+    private static int skipWhitespace(byte[] b, int pos) {
+        while (pos < b.length && (b[pos] == ' ' || b[pos] == '\t' || b[pos] == '\r' || b[pos] == '\n')) {
+            pos++;
+        }
+        if (pos >= b.length) throw new MalformedJsonException();
+        return pos;
+    }
+
+    private static void expect(byte[] b, int pos, char c) {
+        if (b[pos] != c) throw new MalformedJsonException();
+    }
+
+    /**
+     * 内部使用的格式错误信号，不填充栈以降低开销
+     */
+    private static class MalformedJsonException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        MalformedJsonException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.http.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 静态内容缓存、图片变体缓存的命中或未命中
+ */
+@Name("com.http.server.Cache")
+@Label("HTTP Cache Lookup")
+@Description("Static content or image variant cache hit/miss")
+@Category({"HTTP Server", "Cache"})
+@StackTrace(false)
+public class CacheEvent extends Event {
+
+    @Label("Cache")
+    public String cache;
+
+    @Label("Key")
+    public String key;
+
+    @Label("Hit")
+    public boolean hit;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
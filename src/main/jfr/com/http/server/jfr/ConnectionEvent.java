@@ -0,0 +1,36 @@
+package com.http.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * 一个客户端连接从开始处理到关闭的整个生命周期（开始时间即接受连接，结束时间即关闭）
+ */
+@Name("com.http.server.Connection")
+@Label("HTTP Connection")
+@Description("Client connection from accept to close")
+@Category({"HTTP Server", "Connection"})
+@StackTrace(false)
+@Threshold("0 ms")
+public class ConnectionEvent extends Event {
+
+    @Label("Remote Address")
+    public String remoteAddress;
+
+    @Label("Requests")
+    public int requests;
+
+    @Label("Bytes Read")
+    @DataAmount
+    public long bytesIn;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesOut;
+}
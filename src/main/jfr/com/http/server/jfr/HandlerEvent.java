@@ -0,0 +1,30 @@
+package com.http.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Router.route 与 Handler 的执行
+ */
+@Name("com.http.server.Handler")
+@Label("HTTP Handler")
+@Description("Router dispatch and handler execution")
+@Category({"HTTP Server", "Request"})
+@StackTrace(false)
+@Threshold("1 ms")
+public class HandlerEvent extends Event {
+
+    @Label("Route")
+    public String route;
+
+    @Label("URI")
+    public String uri;
+
+    @Label("Status")
+    public int status;
+}
@@ -0,0 +1,116 @@
+package com.http.server.jfr;
+
+import java.net.InetAddress;
+
+/**
+ * ServerEvents 的 JFR 实现，由 ServerEvents 在运行时存在 jdk.jfr 时通过反射加载。
+ * 未录制时 shouldCommit 为 false，字段不会赋值；只加载这一个实现，调用点是单态的，
+ * begin 创建的事件对象通常可被 JIT 的逃逸分析消除。
+ */
+public class JfrServerEvents extends ServerEvents {
+
+    @Override
+    public Object beginConnection() {
+        ConnectionEvent event = new ConnectionEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endConnection(Object token, InetAddress remoteAddress, int requests, long bytesIn, long bytesOut) {
+        ConnectionEvent event = (ConnectionEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.remoteAddress = remoteAddress.getHostAddress();
+            event.requests = requests;
+            event.bytesIn = bytesIn;
+            event.bytesOut = bytesOut;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void requestParsed(String method, String uri, String route, long headerBytes, long headerNanos) {
+        RequestParsedEvent event = new RequestParsedEvent();
+        if (event.shouldCommit()) {
+            event.method = method;
+            event.uri = uri;
+            event.route = route;
+            event.headerBytes = headerBytes;
+            event.headerTime = headerNanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginHandler() {
+        HandlerEvent event = new HandlerEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endHandler(Object token, String route, String uri, int status) {
+        HandlerEvent event = (HandlerEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.route = route;
+            event.uri = uri;
+            event.status = status;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginUpload() {
+        UploadEvent event = new UploadEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endUpload(Object token, String route, String uri, long bytes, int status) {
+        UploadEvent event = (UploadEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.route = route;
+            event.uri = uri;
+            event.bytes = bytes;
+            event.status = status;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginWrite() {
+        ResponseWrittenEvent event = new ResponseWrittenEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endWrite(Object token, String route, int status, long bytesIn, long bytesOut, long requestNanos) {
+        ResponseWrittenEvent event = (ResponseWrittenEvent) token;
+        event.end();
+        if (event.shouldCommit()) {
+            event.route = route;
+            event.status = status;
+            event.bytesIn = bytesIn;
+            event.bytesOut = bytesOut;
+            event.requestTime = requestNanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void cacheLookup(String cache, Object key, boolean hit, long bytes) {
+        CacheEvent event = new CacheEvent();
+        if (event.shouldCommit()) {
+            event.cache = cache;
+            event.key = String.valueOf(key);
+            event.hit = hit;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+}
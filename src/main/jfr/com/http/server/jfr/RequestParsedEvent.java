@@ -0,0 +1,39 @@
+package com.http.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 请求头解析完成。长连接上等待下一个请求的空闲时间不属于解析，
+ * 因此不用事件自身的时长，而是把从第一个字节到解析完成的耗时放在 headerTime 字段中
+ */
+@Name("com.http.server.RequestParsed")
+@Label("HTTP Request Parsed")
+@Description("Request line and headers parsed")
+@Category({"HTTP Server", "Request"})
+@StackTrace(false)
+public class RequestParsedEvent extends Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("URI")
+    public String uri;
+
+    @Label("Route")
+    public String route;
+
+    @Label("Header Size")
+    @DataAmount
+    public long headerBytes;
+
+    @Label("Header Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long headerTime;
+}
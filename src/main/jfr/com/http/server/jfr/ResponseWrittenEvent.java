@@ -0,0 +1,41 @@
+package com.http.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * 响应写出（事件时长为写出与 flush 的耗时，requestTime 为整个请求的耗时）
+ */
+@Name("com.http.server.ResponseWritten")
+@Label("HTTP Response Written")
+@Description("Response serialized and flushed to the client")
+@Category({"HTTP Server", "Request"})
+@StackTrace(false)
+@Threshold("1 ms")
+public class ResponseWrittenEvent extends Event {
+
+    @Label("Route")
+    public String route;
+
+    @Label("Status")
+    public int status;
+
+    @Label("Bytes Read")
+    @DataAmount
+    public long bytesIn;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesOut;
+
+    @Label("Request Time")
+    @Timespan(Timespan.NANOSECONDS)
+    public long requestTime;
+}
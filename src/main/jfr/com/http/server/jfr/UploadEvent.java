@@ -0,0 +1,35 @@
+package com.http.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * 一次上传请求（普通上传或断点续传分片）的处理，包括边读请求体边写盘
+ */
+@Name("com.http.server.Upload")
+@Label("HTTP Upload")
+@Description("Upload request handled, including streaming the body to disk")
+@Category({"HTTP Server", "Upload"})
+@StackTrace(false)
+@Threshold("0 ms")
+public class UploadEvent extends Event {
+
+    @Label("Route")
+    public String route;
+
+    @Label("URI")
+    public String uri;
+
+    @Label("Body Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Status")
+    public int status;
+}
@@ -0,0 +1,61 @@
+package com.http.server.auth;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 每用户内存占用的对比测量：同样的合成用户分别装入 UserTable 与 ConcurrentHashMap，
+ * 比较装入前后 GC 后的已用堆。放在测试源码树中，不随服务器打包；mvn test-compile 后离线运行：
+ *   java -cp target/classes:target/test-classes com.http.server.auth.UserTableFootprint [用户数]
+ * 结果受 JVM 参数（压缩指针、紧凑字符串）影响，只用于量级比较。
+ */
+public class UserTableFootprint {
+
+    public static void main(String[] args) {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String[] names = new String[users];
+        String[] values = new String[users];
+        SecureRandom random = new SecureRandom();
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        byte[] salt = new byte[16];
+        byte[] hash = new byte[32];
+        for (int i = 0; i < users; i++) {
+            names[i] = "user" + i;
+            random.nextBytes(salt);
+            random.nextBytes(hash);
+            values[i] = "pbkdf2$100000$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+        }
+
+        long base = usedHeap();
+        Map<String, String> map = new ConcurrentHashMap<>();
+        for (int i = 0; i < users; i++) {
+            // 复制一份字符串，模拟从请求或日志中解析出的独立对象
+            map.put(new String(names[i].toCharArray()), new String(values[i].toCharArray()));
+        }
+        long mapBytes = usedHeap() - base;
+        System.out.println("ConcurrentHashMap: " + mapBytes / users + " 字节/用户");
+        map = null;
+
+        base = usedHeap();
+        UserTable table = new UserTable();
+        for (int i = 0; i < users; i++) {
+            table.put(names[i], values[i]);
+        }
+        long tableBytes = usedHeap() - base;
+        System.out.println("UserTable:         " + tableBytes / users + " 字节/用户（估算 "
+                + table.estimatedBytes() / users + "）");
+        if (!values[users - 1].equals(table.get(names[users - 1]))) {
+            throw new IllegalStateException("UserTable 读出的值与写入不一致");
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,76 @@
+package com.http.server.upload;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * 断点续传完成阶段的失败重试检查：第一次完成时导入后模拟落盘超时（与上传处理器一样撤销登记），
+ * 会话与 .part 应原样保留；第二次完成应成功导入同样的内容并删除会话。
+ * 放在测试源码树中，mvn test-compile 后离线运行，失败时以非零状态退出：
+ *   java -cp target/classes:target/test-classes com.http.server.upload.ResumableCompleteRetryCheck
+ */
+public class ResumableCompleteRetryCheck {
+
+    public static void main(String[] args) throws IOException {
+        Path root = Files.createTempDirectory("resumable-check");
+        try {
+            run(root);
+            System.out.println("OK");
+        } finally {
+            try (Stream<Path> files = Files.walk(root)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    private static void run(Path root) throws IOException {
+        ResumableUploadManager manager = new ResumableUploadManager(root.resolve("sessions"));
+        UploadStore store = new UploadStore(root.resolve("store"));
+
+        byte[] data = new byte[300 * 1024];
+        new Random(42).nextBytes(data);
+        ResumableUploadManager.Session session = manager.create(data.length);
+        manager.append(session, 0, new ByteArrayInputStream(data));
+        String id = session.getId();
+
+        try {
+            manager.complete(session, file -> {
+                UploadStore.Entry entry = store.importFile(file, ".bin");
+                store.release(entry.getId());
+                throw new UploadPersister.DurabilityTimeoutException("模拟的 fsync 超时");
+            });
+            fail("第一次完成应抛出 DurabilityTimeoutException");
+        } catch (UploadPersister.DurabilityTimeoutException expected) {
+            // 预期
+        }
+        check(store.size() == 0, "失败的完成不应留下登记");
+        check(manager.get(id) == session, "失败后会话应保留");
+        check(session.getOffset() == data.length, "失败后偏移量应不变");
+        check(Arrays.equals(Files.readAllBytes(root.resolve("sessions").resolve(id + ".part")), data),
+                "失败后 .part 应完整保留");
+
+        UploadStore.Entry entry = manager.complete(session, file -> store.importFile(file, ".bin"));
+        check(Arrays.equals(Files.readAllBytes(store.blobPath(entry)), data), "重试导入的内容不一致");
+        check(store.get(entry.getId()) != null, "重试后应有登记");
+        check(manager.get(id) == null, "成功后会话应删除");
+        check(!Files.exists(root.resolve("sessions").resolve(id + ".part")), "成功后 .part 应删除");
+        check(!Files.exists(root.resolve("sessions").resolve(id + ".import")), "交接链接应删除");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            fail(message);
+        }
+    }
+
+    private static void fail(String message) {
+        System.err.println("FAILED: " + message);
+        System.exit(1);
+    }
+}